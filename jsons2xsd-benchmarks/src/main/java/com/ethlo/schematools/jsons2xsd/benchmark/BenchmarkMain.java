@@ -0,0 +1,26 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line, as the JMH main class does, with the
+ * GC profiler added so that allocation rates are reported next to throughput and latency
+ * percentiles.
+ *
+ * @author mha
+ */
+public final class BenchmarkMain
+{
+	private BenchmarkMain()
+	{
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,88 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2Xsd;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdConverter;
+
+/**
+ * Conversions as done by {@link Jsons2Xsd}. The small, medium and account schemas cannot
+ * be converted this way, as they use boolean <code>required</code> or reference definitions
+ * that are not inline.
+ *
+ * @author mha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Jsons2XsdBenchmark
+{
+	private static final String NAMESPACE = "http://ethlo.com/schema/benchmark";
+
+	@Param({"abcd.json", "oneof.json", "late-keywords.json", "synthetic-1000", "synthetic-10000"})
+	public String input;
+
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	private String schema;
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		schema = Schemas.schema(input);
+		file = Files.createTempFile("jsons2xsd-benchmark", ".json");
+		Files.write(file, schema.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public Document convert() throws IOException
+	{
+		return Jsons2Xsd.convert(new StringReader(schema), NAMESPACE, Jsons2Xsd.OuterWrapping.ELEMENT, "Benchmark");
+	}
+
+	@Benchmark
+	public String convertToWriter() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+		converter.convert(new StringReader(schema), writer, NAMESPACE, Jsons2Xsd.OuterWrapping.ELEMENT, "Benchmark");
+		return writer.toString();
+	}
+
+	@Benchmark
+	public String convertFromPath() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+		converter.convert(file, writer, NAMESPACE, Jsons2Xsd.OuterWrapping.ELEMENT, "Benchmark");
+		return writer.toString();
+	}
+}
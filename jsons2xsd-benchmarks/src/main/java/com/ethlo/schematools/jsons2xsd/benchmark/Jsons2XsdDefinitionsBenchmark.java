@@ -0,0 +1,78 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdConverter;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdDefinitions;
+
+/**
+ * Conversions of schemas with their definitions inline, as done by {@link Jsons2XsdDefinitions}
+ *
+ * @author mha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Jsons2XsdDefinitionsBenchmark
+{
+	private static final String NAMESPACE = "http://cableapi.cablelabs.com/schemas/v1/CMTS";
+
+	@Param({"small.jsons", "medium.jsons", "account.json", "synthetic-1000", "synthetic-10000"})
+	public String input;
+
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	private final Jsons2XsdConverter parallel = converter.withDefinitionsPool(ForkJoinPool.commonPool());
+	private String schema;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		schema = Schemas.inlineSchema(input);
+	}
+
+	@Benchmark
+	public Document convert() throws IOException
+	{
+		return Jsons2XsdDefinitions.convert(new StringReader(schema), NAMESPACE, Jsons2XsdDefinitions.OuterWrapping.TYPE, "CMTS");
+	}
+
+	@Benchmark
+	public String convertToWriter() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+		converter.convert(new StringReader(schema), writer, NAMESPACE, Jsons2XsdDefinitions.OuterWrapping.TYPE, "CMTS");
+		return writer.toString();
+	}
+
+	/**
+	 * As {@link #convertToWriter()}, rendering the definitions on the common pool
+	 */
+	@Benchmark
+	public String convertToWriterParallel() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+		parallel.convert(new StringReader(schema), writer, NAMESPACE, Jsons2XsdDefinitions.OuterWrapping.TYPE, "CMTS");
+		return writer.toString();
+	}
+}
@@ -0,0 +1,81 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.ethlo.schematools.jsons2xsd.DefinitionsRegistry;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdConverter;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdSingleFile;
+
+/**
+ * Conversions against shared definitions, as done by {@link Jsons2XsdSingleFile}. The
+ * schemas of the tests use <code>definitions.json</code>, the synthetic ones get generated
+ * definitions.
+ *
+ * @author mha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Jsons2XsdSingleFileBenchmark
+{
+	private static final String NAMESPACE = "http://cableapi.cablelabs.com/schemas/v1/CMTS";
+
+	@Param({"small.jsons", "medium.jsons", "account.json", "synthetic-1000", "synthetic-10000"})
+	public String input;
+
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	private String schema;
+	private String definitions;
+	private DefinitionsRegistry registry;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		schema = Schemas.referencingSchema(input);
+		definitions = Schemas.definitions(input);
+		registry = converter.loadDefinitions(new StringReader(definitions));
+	}
+
+	/**
+	 * Parses the definitions on every call
+	 */
+	@Benchmark
+	public Document convert() throws IOException
+	{
+		return Jsons2XsdSingleFile.convert(new StringReader(schema), new StringReader(definitions), NAMESPACE, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+	}
+
+	@Benchmark
+	public Document convertWithRegistry() throws IOException
+	{
+		return Jsons2XsdSingleFile.convert(new StringReader(schema), registry, NAMESPACE, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+	}
+
+	@Benchmark
+	public String convertToWriter() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+		converter.convert(new StringReader(schema), registry, writer, NAMESPACE, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		return writer.toString();
+	}
+}
@@ -0,0 +1,146 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inputs of the benchmarks: the schemas used by the tests of the library, and
+ * synthetic schemas of a chosen size named <code>synthetic-&lt;properties&gt;</code>.
+ *
+ * @author mha
+ */
+final class Schemas
+{
+	private static final String SYNTHETIC = "synthetic-";
+
+	private Schemas()
+	{
+	}
+
+	/**
+	 * A schema with its properties only, as converted by Jsons2Xsd
+	 */
+	static String schema(String input) throws IOException
+	{
+		return input.startsWith(SYNTHETIC) ? properties(size(input), false) : resource(input);
+	}
+
+	/**
+	 * A schema referencing the definitions of {@link #definitions(String)}, as converted by Jsons2XsdSingleFile
+	 */
+	static String referencingSchema(String input) throws IOException
+	{
+		return input.startsWith(SYNTHETIC) ? properties(size(input), true) : resource(input);
+	}
+
+	static String definitions(String input) throws IOException
+	{
+		return input.startsWith(SYNTHETIC) ? "{\"definitions\":" + definitionsObject(size(input)) + "}" : resource("definitions.json");
+	}
+
+	/**
+	 * A schema with its definitions inline, as converted by Jsons2XsdDefinitions
+	 */
+	static String inlineSchema(String input) throws IOException
+	{
+		if (! input.startsWith(SYNTHETIC))
+		{
+			return resource(input);
+		}
+		final String schema = properties(size(input), true);
+		return schema.substring(0, schema.length() - 1) + ",\"definitions\":" + definitionsObject(size(input)) + "}";
+	}
+
+	private static int size(String input)
+	{
+		return Integer.parseInt(input.substring(SYNTHETIC.length()));
+	}
+
+	private static int definitionCount(int properties)
+	{
+		return Math.max(10, properties / 10);
+	}
+
+	private static String properties(int count, boolean references)
+	{
+		final StringBuilder sb = new StringBuilder("{\"type\":\"object\",\"required\":[");
+		for (int i = 0; i < count; i += 2)
+		{
+			sb.append(i > 0 ? "," : "").append("\"property").append(i).append('"');
+		}
+		sb.append("],\"properties\":{");
+		for (int i = 0; i < count; i++)
+		{
+			sb.append(i > 0 ? "," : "").append("\"property").append(i).append("\":");
+			switch (i % 8)
+			{
+				case 0:
+					sb.append("{\"type\":\"string\",\"maxLength\":").append(i % 100 + 1).append('}');
+					break;
+				case 1:
+					sb.append("{\"type\":\"integer\",\"minimum\":0}");
+					break;
+				case 2:
+					sb.append("{\"type\":\"string\",\"enum\":[\"red\",\"green\",\"blue\"]}");
+					break;
+				case 3:
+					sb.append("{\"type\":\"string\",\"format\":\"date-time\"}");
+					break;
+				case 4:
+					sb.append("{\"type\":\"array\",\"items\":{\"type\":\"string\"},\"maxItems\":10}");
+					break;
+				case 5:
+					sb.append("{\"type\":\"object\",\"required\":[\"name\"],\"properties\":{\"name\":{\"type\":\"string\"},\"amount\":{\"type\":\"number\"}}}");
+					break;
+				case 6:
+					if (references)
+					{
+						sb.append("{\"$ref\":\"#/definitions/Definition").append(i % definitionCount(count)).append("\"}");
+					}
+					else
+					{
+						sb.append("{\"type\":\"boolean\"}");
+					}
+					break;
+				default:
+					sb.append("{\"type\":\"boolean\"}");
+					break;
+			}
+		}
+		return sb.append("}}").toString();
+	}
+
+	private static String definitionsObject(int properties)
+	{
+		final int count = definitionCount(properties);
+		final StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < count; i++)
+		{
+			sb.append(i > 0 ? "," : "").append("\"Definition").append(i).append("\":{\"type\":\"object\",\"required\":[\"id\"],\"properties\":{")
+				.append("\"id\":{\"type\":\"string\"},\"value\":{\"type\":\"number\"},")
+				.append("\"next\":{\"$ref\":\"#/definitions/Definition").append((i + 1) % count).append("\"}}}");
+		}
+		return sb.append('}').toString();
+	}
+
+	private static String resource(String name) throws IOException
+	{
+		try (final InputStream in = Schemas.class.getResourceAsStream("/schema/" + name))
+		{
+			if (in == null)
+			{
+				throw new IOException("No such schema: " + name);
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
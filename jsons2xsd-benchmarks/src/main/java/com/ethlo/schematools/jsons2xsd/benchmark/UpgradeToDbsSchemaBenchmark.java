@@ -0,0 +1,63 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2Xsd;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The tree walk of {@link Jsons2Xsd#upgradeToDbsSchema(JsonNode)}, compared with the previous
+ * approach of serializing the schema, filtering it with a regular expression and parsing it again.
+ * Both work on a copy, as the tree walk modifies the schema in place.
+ *
+ * @author mha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpgradeToDbsSchemaBenchmark
+{
+	private static final String REGEX = "(([^}\\s]*)\"additionalProperties\":(?:[^\"]*[false]))";
+
+	@Param({"account.json", "synthetic-10000"})
+	public String input;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private JsonNode definitions;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		definitions = mapper.readTree(Schemas.definitions(input));
+	}
+
+	@Benchmark
+	public JsonNode treeWalk()
+	{
+		return Jsons2Xsd.upgradeToDbsSchema(definitions.deepCopy());
+	}
+
+	@Benchmark
+	public JsonNode serializeRegexParse() throws IOException
+	{
+		return mapper.readTree(definitions.deepCopy().toString().replaceAll(REGEX, ""));
+	}
+}
@@ -0,0 +1,53 @@
+package com.ethlo.schematools.jsons2xsd.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdSingleFile;
+import com.ethlo.schematools.jsons2xsd.XmlUtil;
+
+/**
+ * Serialization of converted documents with {@link XmlUtil#asXmlString(org.w3c.dom.Node)}
+ *
+ * @author mha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlUtilBenchmark
+{
+	@Param({"small.jsons", "account.json", "synthetic-10000"})
+	public String input;
+
+	private Document document;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		document = Jsons2XsdSingleFile.convert(new StringReader(Schemas.referencingSchema(input)), new StringReader(Schemas.definitions(input)), "http://cableapi.cablelabs.com/schemas/v1/CMTS", Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+	}
+
+	@Benchmark
+	public String asXmlString() throws IOException
+	{
+		return XmlUtil.asXmlString(document.getDocumentElement());
+	}
+}
@@ -0,0 +1,343 @@
+package com.ethlo.schematools.jsons2xsd.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import com.ethlo.schematools.jsons2xsd.ConversionDiagnostics;
+import com.ethlo.schematools.jsons2xsd.DefinitionsRegistry;
+import com.ethlo.schematools.jsons2xsd.Jsons2Xsd;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdBatch;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdConverter;
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdSingleFile;
+import com.ethlo.schematools.jsons2xsd.OutputProfile;
+import com.ethlo.schematools.jsons2xsd.TypeMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Converts the JSON schemas of a directory to XSD, as done by the <code>batch</code> command of
+ * the command line, see {@link com.ethlo.schematools.jsons2xsd.Jsons2XsdCli}.
+ * <p>
+ * A schema is converted again only when its content, the definitions file, the type mappings or
+ * another parameter changed since it was last converted, or its XSD is missing. This is tracked in
+ * a state file, holding a SHA-256 hash of all of them per schema. The stale schemas are converted
+ * in parallel. XSDs of schemas that are gone are deleted.
+ *
+ * @author mha
+ */
+@Mojo(name = "convert", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class Jsons2XsdMojo extends AbstractMojo
+{
+	/**
+	 * Part of every hash; change it when the XSD produced for the same input changes
+	 */
+	private static final String FORMAT_VERSION = "1";
+
+	@Parameter(defaultValue = "${project.basedir}/src/main/jsonschema", required = true)
+	File sourceDirectory;
+
+	/**
+	 * The schemas to convert, relative to the source directory
+	 */
+	@Parameter(defaultValue = "**.json", required = true)
+	String glob;
+
+	@Parameter(defaultValue = "${project.build.directory}/generated-resources/jsons2xsd", required = true)
+	File outputDirectory;
+
+	/**
+	 * Target namespace, where {name} and {path} are replaced with the file name and relative path of the schema
+	 */
+	@Parameter(required = true)
+	String namespace;
+
+	/**
+	 * Name of the XSD type, with {name} and {path} replaced as for the namespace
+	 */
+	@Parameter(defaultValue = "{name}", required = true)
+	String name;
+
+	/**
+	 * Shared definitions, converting as done by Jsons2XsdSingleFile
+	 */
+	@Parameter
+	File definitions;
+
+	/**
+	 * ELEMENT or TYPE
+	 */
+	@Parameter(defaultValue = "ELEMENT", required = true)
+	String wrapping;
+
+	/**
+	 * Extra type mappings, in the properties format of {@link TypeMapper#with(Properties)}
+	 */
+	@Parameter
+	File types;
+
+	/**
+	 * Write anonymous types used more than once as a single named type
+	 */
+	@Parameter(defaultValue = "false")
+	boolean sharedTypes;
+
+	/**
+	 * Layout of the XSDs, PRETTY, COMPACT or CANONICAL, see {@link OutputProfile}
+	 */
+	@Parameter(defaultValue = "PRETTY", required = true)
+	String profile;
+
+	/**
+	 * Number of threads, the number of processors when 0
+	 */
+	@Parameter(defaultValue = "0")
+	int threads;
+
+	@Parameter(defaultValue = "${project.build.directory}/jsons2xsd.state", required = true)
+	File stateFile;
+
+	/**
+	 * Add the output directory to the resources of the project
+	 */
+	@Parameter(defaultValue = "true")
+	boolean addResource;
+
+	@Parameter(property = "jsons2xsd.skip", defaultValue = "false")
+	boolean skip;
+
+	@Parameter(defaultValue = "${project}", readonly = true)
+	MavenProject project;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException
+	{
+		if (skip)
+		{
+			getLog().info("Skipping conversion");
+			return;
+		}
+		if (! sourceDirectory.isDirectory())
+		{
+			getLog().info("No schemas in " + sourceDirectory);
+			return;
+		}
+
+		try
+		{
+			convert();
+		}
+		catch (IOException | IllegalArgumentException exc)
+		{
+			throw new MojoExecutionException(exc.getMessage(), exc);
+		}
+
+		if (addResource && project != null)
+		{
+			final Resource resource = new Resource();
+			resource.setDirectory(outputDirectory.getPath());
+			project.addResource(resource);
+		}
+	}
+
+	private void convert() throws IOException, MojoFailureException
+	{
+		final Path directory = sourceDirectory.toPath();
+		final Path output = outputDirectory.toPath();
+		final List<Path> schemas = Jsons2XsdBatch.findSchemas(directory, glob);
+		if (definitions != null)
+		{
+			schemas.remove(directory.toAbsolutePath().relativize(definitions.toPath().toAbsolutePath()));
+		}
+
+		final Properties previous = load();
+		final Properties state = new Properties();
+		final String options = options();
+		final List<Path> stale = new ArrayList<>();
+		for (Path schema : schemas)
+		{
+			final String key = key(schema);
+			final String hash = hash(options, Files.readAllBytes(directory.resolve(schema)));
+			state.setProperty(key, hash);
+			if (! hash.equals(previous.getProperty(key)) || ! Files.exists(target(output, schema)))
+			{
+				stale.add(schema);
+			}
+		}
+
+		for (String key : new TreeSet<>(previous.stringPropertyNames()))
+		{
+			if (! state.containsKey(key))
+			{
+				final Path schema = directory.getFileSystem().getPath(key);
+				Files.deleteIfExists(target(output, schema));
+				getLog().info("Deleted the XSD of " + key);
+			}
+		}
+
+		if (stale.isEmpty())
+		{
+			getLog().info("All " + schemas.size() + " XSDs are up to date");
+			save(state);
+			return;
+		}
+
+		final Jsons2XsdBatch.Result result = convert(directory, stale, output);
+		for (Entry<Path, ConversionDiagnostics> diagnostics : result.getDiagnostics().entrySet())
+		{
+			for (ConversionDiagnostics.Diagnostic diagnostic : diagnostics.getValue().getDiagnostics())
+			{
+				getLog().warn(diagnostics.getKey() + diagnostic.toString());
+			}
+		}
+		for (Entry<Path, Exception> failure : result.getFailures().entrySet())
+		{
+			getLog().error("Failed " + failure.getKey() + ": " + failure.getValue());
+			// Tried again next time
+			state.remove(key(failure.getKey()));
+		}
+		save(state);
+
+		getLog().info(result + ", " + (schemas.size() - stale.size()) + " up to date");
+		if (! result.getFailures().isEmpty())
+		{
+			throw new MojoFailureException(result.getFailures().size() + " of " + stale.size() + " schemas could not be converted");
+		}
+	}
+
+	private Jsons2XsdBatch.Result convert(Path directory, List<Path> stale, Path output) throws IOException
+	{
+		final Jsons2XsdConverter converter = new Jsons2XsdConverter(new ObjectMapper(), typeMapper()).withSharedTypes(sharedTypes).withOutputProfile(OutputProfile.valueOf(profile));
+		final Jsons2XsdBatch.Naming naming = Jsons2XsdBatch.naming(namespace, name);
+		final ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+		try
+		{
+			final Jsons2XsdBatch batch = new Jsons2XsdBatch(converter, pool);
+			if (definitions != null)
+			{
+				final DefinitionsRegistry registry;
+				try (final Reader reader = Files.newBufferedReader(definitions.toPath(), StandardCharsets.UTF_8))
+				{
+					registry = converter.loadDefinitions(reader);
+				}
+				return batch.convert(directory, stale, output, naming, registry, Jsons2XsdSingleFile.OuterWrapping.valueOf(wrapping));
+			}
+			return batch.convert(directory, stale, output, naming, Jsons2Xsd.OuterWrapping.valueOf(wrapping));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private TypeMapper typeMapper() throws IOException
+	{
+		if (types == null)
+		{
+			return TypeMapper.DEFAULT;
+		}
+		final Properties mappings = new Properties();
+		try (final Reader reader = Files.newBufferedReader(types.toPath(), StandardCharsets.UTF_8))
+		{
+			mappings.load(reader);
+		}
+		return TypeMapper.DEFAULT.with(mappings);
+	}
+
+	/**
+	 * @return Everything but the schema deciding the XSD, the files they name by content
+	 */
+	private String options() throws IOException
+	{
+		final StringBuilder options = new StringBuilder(FORMAT_VERSION);
+		for (String option : new String[]{glob, namespace, name, wrapping, Boolean.toString(sharedTypes), profile, outputDirectory.getAbsolutePath()})
+		{
+			options.append('\u0000').append(option);
+		}
+		for (File file : new File[]{definitions, types})
+		{
+			options.append('\u0000').append(file != null ? hash("", Files.readAllBytes(file.toPath())) : "-");
+		}
+		return options.toString();
+	}
+
+	private Properties load() throws IOException
+	{
+		final Properties state = new Properties();
+		if (stateFile.isFile())
+		{
+			try (final InputStream in = Files.newInputStream(stateFile.toPath()))
+			{
+				state.load(in);
+			}
+		}
+		return state;
+	}
+
+	private void save(Properties state) throws IOException
+	{
+		final Path file = stateFile.toPath();
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (final OutputStream out = Files.newOutputStream(tmp))
+		{
+			state.store(out, "Converted by jsons2xsd-maven-plugin, by schema the hash of its content and the parameters");
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static String key(Path schema)
+	{
+		return schema.toString().replace(schema.getFileSystem().getSeparator(), "/");
+	}
+
+	private static Path target(Path output, Path schema)
+	{
+		final String name = schema.toString();
+		final int dot = name.lastIndexOf('.');
+		return output.resolve((dot > name.lastIndexOf(schema.getFileSystem().getSeparator()) ? name.substring(0, dot) : name) + ".xsd");
+	}
+
+	private static String hash(String options, byte[] content)
+	{
+		final MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException exc)
+		{
+			throw new IllegalStateException(exc);
+		}
+		digest.update(options.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		final StringBuilder hex = new StringBuilder(64);
+		for (byte b : digest.digest(content))
+		{
+			hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package com.ethlo.schematools.jsons2xsd.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author mha
+ *
+ */
+public class Jsons2XsdMojoTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testConvertsOnlyStaleSchemas() throws IOException, MojoExecutionException, MojoFailureException
+	{
+		final File source = folder.newFolder("schemas");
+		final Path schema = source.toPath().resolve("person.json");
+		write(schema, "{\"type\":\"object\",\"properties\":{\"name\":{\"type\":\"string\"}}}");
+		write(source.toPath().resolve("nested/company.json"), "{\"type\":\"object\",\"properties\":{\"name\":{\"type\":\"string\"}}}");
+
+		final Jsons2XsdMojo mojo = mojo(source);
+		mojo.execute();
+		final Path person = mojo.outputDirectory.toPath().resolve("person.xsd");
+		final Path company = mojo.outputDirectory.toPath().resolve("nested/company.xsd");
+		assertTrue(read(person).contains("http://ethlo.com/schema/person"));
+		assertTrue(Files.exists(company));
+
+		// Unchanged, so not written again
+		write(person, "untouched");
+		mojo.execute();
+		assertEquals("untouched", read(person));
+
+		// A missing XSD is written again
+		Files.delete(company);
+		mojo.execute();
+		assertTrue(Files.exists(company));
+		assertEquals("untouched", read(person));
+
+		// As is every XSD when a parameter changes
+		mojo.name = "{name}Type";
+		mojo.execute();
+		assertTrue(read(person).contains("personType"));
+
+		Files.delete(schema);
+		mojo.execute();
+		assertFalse(Files.exists(person));
+		assertTrue(Files.exists(company));
+	}
+
+	@Test(expected = MojoFailureException.class)
+	public void testFailure() throws IOException, MojoExecutionException, MojoFailureException
+	{
+		final File source = folder.newFolder("schemas");
+		write(source.toPath().resolve("broken.json"), "{\"type\":\"string\"}");
+		mojo(source).execute();
+	}
+
+	private Jsons2XsdMojo mojo(File source) throws IOException
+	{
+		final Jsons2XsdMojo mojo = new Jsons2XsdMojo();
+		mojo.sourceDirectory = source;
+		mojo.glob = "**.json";
+		mojo.outputDirectory = folder.newFolder("xsd");
+		mojo.namespace = "http://ethlo.com/schema/{name}";
+		mojo.name = "{name}";
+		mojo.wrapping = "ELEMENT";
+		mojo.profile = "PRETTY";
+		mojo.threads = 2;
+		mojo.stateFile = new File(folder.getRoot(), "jsons2xsd.state");
+		return mojo;
+	}
+
+	private static void write(Path file, String content) throws IOException
+	{
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(Path file) throws IOException
+	{
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+}
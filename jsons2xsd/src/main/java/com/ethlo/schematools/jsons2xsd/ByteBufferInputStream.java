@@ -0,0 +1,49 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer, for the parsers that only take a stream or an array,
+ * when the buffer has no array to hand out, as with direct and mapped buffers. The position of
+ * the buffer moves as it is read, so pass a duplicate to keep it.
+ *
+ * @author mha
+ */
+final class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer buffer;
+
+	ByteBufferInputStream(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read()
+	{
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len)
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		if (! buffer.hasRemaining())
+		{
+			return -1;
+		}
+		final int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public int available()
+	{
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,249 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Holds the state of a single conversion. A new context is created for every call to
+ * <code>convert</code>, so nothing leaks from one conversion into the next and the
+ * converters can be used from many threads at once.
+ * 
+ * @author mha
+ */
+class ConversionContext
+{
+	/**
+	 * Maps JSON schema types to XSD types
+	 */
+	final TypeMapper types;
+	
+	/**
+	 * Namespace prefix used when resolving <code>$ref</code>s
+	 */
+	String ns;
+	
+	/**
+	 * Where warnings go, or null when not wanted
+	 */
+	final ConversionDiagnostics diagnostics;
+	
+	/**
+	 * Timings and counts, or null when nobody listens
+	 */
+	final ConversionMetrics metrics;
+	
+	/**
+	 * Where definitions are rendered in parallel, or null to render them in turn
+	 */
+	final ForkJoinPool pool;
+	
+	// Segments of the JSON pointer to the current schema, only kept with diagnostics
+	private String[] path;
+	private int depth;
+	
+	ConversionContext(TypeMapper types)
+	{
+		this(types, null, null);
+	}
+	
+	ConversionContext(TypeMapper types, ConversionDiagnostics diagnostics, ConversionMetrics metrics)
+	{
+		this(types, diagnostics, metrics, null);
+	}
+	
+	ConversionContext(TypeMapper types, ConversionDiagnostics diagnostics, ConversionMetrics metrics, ForkJoinPool pool)
+	{
+		this.types = types;
+		this.diagnostics = diagnostics;
+		this.metrics = metrics;
+		this.pool = pool;
+		this.path = diagnostics != null ? new String[16] : null;
+	}
+	
+	/**
+	 * A context for converting part of the schema on another thread, at the current position,
+	 * with warnings and counts of its own to {@link #join(ConversionContext)} once done
+	 */
+	ConversionContext fork()
+	{
+		final ConversionContext fork = new ConversionContext(types, diagnostics != null ? new ConversionDiagnostics() : null, metrics != null ? new ConversionMetrics() : null, pool);
+		fork.ns = ns;
+		if (path != null)
+		{
+			fork.path = Arrays.copyOf(path, path.length);
+			fork.depth = depth;
+		}
+		return fork;
+	}
+	
+	/**
+	 * Take the warnings and counts of <code>fork</code>, as if its part had been converted with this context
+	 */
+	void join(ConversionContext fork)
+	{
+		if (diagnostics != null)
+		{
+			for (ConversionDiagnostics.Diagnostic diagnostic : fork.diagnostics.getDiagnostics())
+			{
+				diagnostics.add(diagnostic.getKind(), diagnostic.getPointer(), diagnostic.getPlaceholder());
+			}
+		}
+		if (metrics != null)
+		{
+			metrics.nodes += fork.metrics.nodes;
+			metrics.references += fork.metrics.references;
+		}
+	}
+	
+	/**
+	 * End the current phase of the conversion and start <code>phase</code>
+	 */
+	void phase(ConversionMetrics.Phase phase)
+	{
+		if (metrics != null)
+		{
+			metrics.enter(phase);
+		}
+	}
+	
+	/**
+	 * Count a schema about to be converted
+	 */
+	void visit()
+	{
+		if (metrics != null)
+		{
+			metrics.nodes++;
+		}
+	}
+	
+	void reference()
+	{
+		if (metrics != null)
+		{
+			metrics.references++;
+		}
+	}
+	
+	/**
+	 * @return <code>out</code>, counting the elements and types written to it when there are metrics
+	 */
+	XsdOutput count(XsdOutput out)
+	{
+		return metrics != null ? new CountingOutput(out, metrics) : out;
+	}
+	
+	/**
+	 * Descend into the schema <code>name</code> under <code>keyword</code>, like a property under <code>properties</code>
+	 */
+	void enter(String keyword, String name)
+	{
+		if (diagnostics != null)
+		{
+			push(keyword);
+			push(name);
+		}
+	}
+	
+	void enter(String keyword, int index)
+	{
+		if (diagnostics != null)
+		{
+			push(keyword);
+			push(Integer.toString(index));
+		}
+	}
+	
+	void enter(String keyword)
+	{
+		if (diagnostics != null)
+		{
+			push(keyword);
+		}
+	}
+	
+	/**
+	 * Undo the last {@link #enter}, with the number of segments it added
+	 */
+	void leave(int segments)
+	{
+		if (diagnostics != null)
+		{
+			depth -= segments;
+		}
+	}
+	
+	void warn(ConversionDiagnostics.Kind kind, String placeholder)
+	{
+		if (diagnostics != null)
+		{
+			diagnostics.add(kind, pointer(), placeholder);
+		}
+	}
+	
+	private void push(String segment)
+	{
+		if (depth == path.length)
+		{
+			path = Arrays.copyOf(path, depth * 2);
+		}
+		path[depth++] = segment;
+	}
+	
+	private String pointer()
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+		{
+			// Escaped as in RFC 6901
+			sb.append('/').append(path[i].replace("~", "~0").replace("/", "~1"));
+		}
+		return sb.toString();
+	}
+	
+	private static final class CountingOutput implements XsdOutput
+	{
+		private final XsdOutput out;
+		private final ConversionMetrics metrics;
+		
+		CountingOutput(XsdOutput out, ConversionMetrics metrics)
+		{
+			this.out = out;
+			this.metrics = metrics;
+		}
+		
+		@Override
+		public void startElement(String name)
+		{
+			switch (name)
+			{
+				case "element":
+					metrics.elements++;
+					break;
+				case "complexType":
+				case "simpleType":
+					metrics.types++;
+					break;
+			}
+			out.startElement(name);
+		}
+		
+		@Override
+		public void attribute(String name, String value)
+		{
+			out.attribute(name, value);
+		}
+		
+		@Override
+		public void namespace(String prefix, String namespaceUri)
+		{
+			out.namespace(prefix, namespaceUri);
+		}
+		
+		@Override
+		public void endElement()
+		{
+			out.endElement();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects what needs attention in the XSD of a single conversion, such as the element
+ * names made up for array items and oneOf branches.
+ * <p>
+ * Pass a new instance to a conversion, and read it once the conversion is done. Conversions
+ * without one do not track where they are in the schema, and report nothing.
+ *
+ * @author mha
+ */
+public final class ConversionDiagnostics
+{
+	public enum Kind
+	{
+		/**
+		 * The items of an array got an element name, from their description or made up
+		 */
+		ARRAY_ELEMENT_NAME("Manual changes required: providing element name inside 'array'"),
+
+		/**
+		 * A branch of a oneOf got an element name, from its description or made up
+		 */
+		CHOICE_ELEMENT_NAME("Manual changes required: providing element name inside 'oneOf'"),
+
+		/**
+		 * A oneOf that is not an array, left as an empty choice
+		 */
+		MALFORMED_ONEOF("Malformed 'oneOf' clause, please verify"),
+
+		/**
+		 * Array items without a type, which cannot be converted
+		 */
+		MALFORMED_ARRAY("Malformed JSON array, please remove the '[' / ']' from the array");
+
+		private final String message;
+
+		private Kind(String message)
+		{
+			this.message = message;
+		}
+
+		public String getMessage()
+		{
+			return message;
+		}
+	}
+
+	public static final class Diagnostic
+	{
+		private final Kind kind;
+		private final String pointer;
+		private final String placeholder;
+
+		Diagnostic(Kind kind, String pointer, String placeholder)
+		{
+			this.kind = kind;
+			this.pointer = pointer;
+			this.placeholder = placeholder;
+		}
+
+		public Kind getKind()
+		{
+			return kind;
+		}
+
+		/**
+		 * @return The JSON pointer to the schema in the converted file, empty for the root
+		 */
+		public String getPointer()
+		{
+			return pointer;
+		}
+
+		/**
+		 * @return The element name chosen by the conversion, or null if none
+		 */
+		public String getPlaceholder()
+		{
+			return placeholder;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "#" + pointer + ": " + kind.getMessage() + (placeholder != null ? ": " + placeholder : "");
+		}
+	}
+
+	private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+	/**
+	 * @return What was found, in the order of the schema
+	 */
+	public List<Diagnostic> getDiagnostics()
+	{
+		return Collections.unmodifiableList(diagnostics);
+	}
+
+	public boolean isEmpty()
+	{
+		return diagnostics.isEmpty();
+	}
+
+	void add(Kind kind, String pointer, String placeholder)
+	{
+		diagnostics.add(new Diagnostic(kind, pointer, placeholder));
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (Diagnostic diagnostic : diagnostics)
+		{
+			sb.append(diagnostic).append('\n');
+		}
+		return sb.toString();
+	}
+}
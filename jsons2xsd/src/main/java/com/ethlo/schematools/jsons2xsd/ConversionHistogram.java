@@ -0,0 +1,152 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the timings of conversions into histograms, to read latency percentiles
+ * from, in total and per phase.
+ * <p>
+ * The buckets are spaced logarithmically, 8 per power of two, so a percentile is
+ * accurate to within about 10%. Recording takes no locks.
+ *
+ * @author mha
+ */
+public final class ConversionHistogram implements ConversionListener
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final AtomicLongArray total = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray[] phases = new AtomicLongArray[ConversionMetrics.Phase.values().length];
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong outputBytes = new AtomicLong();
+	private final AtomicLong nodes = new AtomicLong();
+
+	public ConversionHistogram()
+	{
+		for (int i = 0; i < phases.length; i++)
+		{
+			phases[i] = new AtomicLongArray(BUCKETS);
+		}
+	}
+
+	@Override
+	public void conversionCompleted(ConversionMetrics metrics)
+	{
+		total.incrementAndGet(bucket(metrics.getTotalNanos()));
+		for (ConversionMetrics.Phase phase : ConversionMetrics.Phase.values())
+		{
+			phases[phase.ordinal()].incrementAndGet(bucket(metrics.getNanos(phase)));
+		}
+		outputBytes.addAndGet(metrics.getOutputBytes());
+		nodes.addAndGet(metrics.getNodes());
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @return The number of conversions recorded
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public long getOutputBytes()
+	{
+		return outputBytes.get();
+	}
+
+	public long getNodes()
+	{
+		return nodes.get();
+	}
+
+	/**
+	 * @param percentile Between 0 and 100, like 50 for the median or 99
+	 * @return The total time in nanoseconds that <code>percentile</code> percent of the conversions took at most
+	 */
+	public long getPercentile(double percentile)
+	{
+		return percentile(total, percentile);
+	}
+
+	/**
+	 * @return The time in nanoseconds that <code>percentile</code> percent of the conversions spent at most in <code>phase</code>
+	 */
+	public long getPercentile(ConversionMetrics.Phase phase, double percentile)
+	{
+		return percentile(phases[phase.ordinal()], percentile);
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("count=%d, total p50=%.3f ms p99=%.3f ms", getCount(), getPercentile(50) / 1e6, getPercentile(99) / 1e6));
+		for (ConversionMetrics.Phase phase : ConversionMetrics.Phase.values())
+		{
+			sb.append(String.format(", %s p50=%.3f ms p99=%.3f ms", phase.name().toLowerCase(), getPercentile(phase, 50) / 1e6, getPercentile(phase, 99) / 1e6));
+		}
+		return sb.toString();
+	}
+
+	private static long percentile(AtomicLongArray buckets, double percentile)
+	{
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+		final long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return upperBound(i);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	/**
+	 * Values below {@link #SUB_BUCKETS} get a bucket each, larger ones share a bucket with
+	 * those having the same highest bit and the same {@link #SUB_BUCKET_BITS} bits below it
+	 */
+	static int bucket(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) Math.max(0, value);
+		}
+		final int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return The largest value in <code>bucket</code>
+	 */
+	static long upperBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		final int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long subBucket = bucket % SUB_BUCKETS;
+		final long lowest = (1L << highestBit) | (subBucket << (highestBit - SUB_BUCKET_BITS));
+		return lowest + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,15 @@
+package com.ethlo.schematools.jsons2xsd;
+
+/**
+ * Told about every conversion done by a {@link Jsons2XsdConverter}. Called on the thread
+ * that did the conversion, so it must be thread-safe when the converter is shared.
+ *
+ * @author mha
+ */
+public interface ConversionListener
+{
+	/**
+	 * Called once a conversion succeeded. Failed conversions are not reported.
+	 */
+	void conversionCompleted(ConversionMetrics metrics);
+}
@@ -0,0 +1,141 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counts of a single conversion, passed to a {@link ConversionListener}.
+ *
+ * @author mha
+ */
+public final class ConversionMetrics
+{
+	public enum Phase
+	{
+		/**
+		 * Reading the JSON schema into a tree, or the first pass over a schema file
+		 */
+		PARSE,
+
+		/**
+		 * Rewriting the tree before rendering, see {@link Jsons2Xsd#upgradeToDbsSchema(com.fasterxml.jackson.databind.JsonNode)}
+		 */
+		PREPARE,
+
+		/**
+		 * Building the XSD document, or writing it for conversions to a stream
+		 */
+		RENDER,
+
+		/**
+		 * Flushing the written XSD, for conversions to a stream
+		 */
+		WRITE
+	}
+
+	private final long[] nanos = new long[Phase.values().length];
+	private final long start = System.nanoTime();
+	private Phase current;
+	private long since = start;
+	private long totalNanos;
+
+	long nodes;
+	long elements;
+	long types;
+	long references;
+	long outputBytes;
+
+	/**
+	 * End the current phase, if any, and start <code>phase</code>. Null ends the current phase only.
+	 */
+	void enter(Phase phase)
+	{
+		final long now = System.nanoTime();
+		if (current != null)
+		{
+			nanos[current.ordinal()] += now - since;
+		}
+		current = phase;
+		since = now;
+	}
+
+	void complete()
+	{
+		enter(null);
+		totalNanos = since - start;
+	}
+
+	public long getNanos(Phase phase)
+	{
+		return nanos[phase.ordinal()];
+	}
+
+	public long getElapsed(Phase phase, TimeUnit unit)
+	{
+		return unit.convert(getNanos(phase), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The wall time of the whole conversion, which includes a little more than the phases
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos;
+	}
+
+	/**
+	 * @return The number of schemas converted: properties, array items and oneOf branches
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * @return The number of <code>element</code>s written
+	 */
+	public long getElements()
+	{
+		return elements;
+	}
+
+	/**
+	 * @return The number of <code>complexType</code>s and <code>simpleType</code>s written
+	 */
+	public long getTypes()
+	{
+		return types;
+	}
+
+	/**
+	 * @return The number of <code>$ref</code>s turned into type references
+	 */
+	public long getReferences()
+	{
+		return references;
+	}
+
+	/**
+	 * @return The size of the XSD in UTF-8, for conversions to a stream, otherwise 0
+	 */
+	public long getOutputBytes()
+	{
+		return outputBytes;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("total=%.3f ms", totalNanos / 1e6));
+		for (Phase phase : Phase.values())
+		{
+			sb.append(String.format(", %s=%.3f ms", phase.name().toLowerCase(), getNanos(phase) / 1e6));
+		}
+		return sb.append(", nodes=").append(nodes)
+			.append(", elements=").append(elements)
+			.append(", types=").append(types)
+			.append(", references=").append(references)
+			.append(", outputBytes=").append(outputBytes)
+			.toString();
+	}
+}
@@ -0,0 +1,176 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Parsed, read-only view of a shared definitions file, indexed by definition name.
+ * <p>
+ * Load it once and pass it to any number of conversions, also concurrently. The
+ * definitions are kept in the order of the file, so the output does not depend on
+ * the order in which they are referenced. The references of a definition are worked out
+ * once, by the first conversion reaching it.
+ * <p>
+ * A registry {@link #map(Path) mapped} from a file parses a definition only when first used,
+ * so a conversion needing a few definitions of a huge file parses only those.
+ * 
+ * @author mha
+ */
+public final class DefinitionsRegistry
+{
+	private final static ObjectMapper mapper = new ObjectMapper();
+	
+	private final List<String> names;
+	private final AtomicReferenceArray<JsonNode> definitions;
+	private final Map<String, Integer> index;
+	private final MappedDefinitions source;
+	private volatile ReferenceGraph referenceGraph;
+	
+	private DefinitionsRegistry(JsonNode definitionsNode)
+	{
+		final int size = definitionsNode.size();
+		final List<String> names = new ArrayList<>(size);
+		this.definitions = new AtomicReferenceArray<>(size);
+		this.index = new HashMap<>(size * 2);
+		final Iterator<Entry<String, JsonNode>> fieldIter = definitionsNode.fields();
+		while (fieldIter.hasNext())
+		{
+			final Entry<String, JsonNode> entry = fieldIter.next();
+			definitions.set(names.size(), entry.getValue());
+			index.put(entry.getKey(), names.size());
+			names.add(entry.getKey());
+		}
+		this.names = Collections.unmodifiableList(names);
+		this.source = null;
+	}
+	
+	private DefinitionsRegistry(MappedDefinitions source)
+	{
+		this.names = source.getNames();
+		this.definitions = new AtomicReferenceArray<>(names.size());
+		this.index = new HashMap<>(names.size() * 2);
+		for (int idx = 0; idx < names.size(); idx++)
+		{
+			index.put(names.get(idx), idx);
+		}
+		this.source = source;
+	}
+	
+	/**
+	 * Read a definitions file, a JSON object with the definitions under <code>definitions</code>
+	 */
+	public static DefinitionsRegistry load(Reader definitionSchema) throws IOException
+	{
+		return of(JsonTreeReader.read(mapper, mapper.getFactory().createParser(definitionSchema)));
+	}
+	
+	/**
+	 * Map a definitions file into memory, parsing each definition when first used. The byte
+	 * ranges of the definitions are kept in <code>&lt;file&gt;.index</code> next to it, if it
+	 * can be written, so later runs need not look for them again.
+	 * The file must be in UTF-8, and must not change while the registry is used.
+	 */
+	public static DefinitionsRegistry map(Path definitionsFile) throws IOException
+	{
+		Assert.notNull(definitionsFile, "definitionsFile cannot be null");
+		return map(definitionsFile, definitionsFile.resolveSibling(definitionsFile.getFileName() + ".index"));
+	}
+	
+	/**
+	 * Like {@link #map(Path)}, with the byte ranges kept in <code>indexFile</code>, or nowhere when null
+	 */
+	public static DefinitionsRegistry map(Path definitionsFile, Path indexFile) throws IOException
+	{
+		Assert.notNull(definitionsFile, "definitionsFile cannot be null");
+		return new DefinitionsRegistry(MappedDefinitions.map(mapper, definitionsFile, indexFile));
+	}
+	
+	/**
+	 * Index an already parsed definitions file. The node must not be modified afterwards.
+	 */
+	public static DefinitionsRegistry of(JsonNode definitionsRootNode)
+	{
+		Assert.notNull(definitionsRootNode, "definitionsRootNode cannot be null");
+		return new DefinitionsRegistry(definitionsRootNode.path("definitions"));
+	}
+	
+	public JsonNode get(String name)
+	{
+		final Integer idx = index.get(name);
+		return idx != null ? get(idx) : null;
+	}
+	
+	/**
+	 * @return The position of the definition in the file, or -1 if not defined
+	 */
+	public int indexOf(String name)
+	{
+		final Integer idx = index.get(name);
+		return idx != null ? idx : -1;
+	}
+	
+	public String getName(int index)
+	{
+		return names.get(index);
+	}
+	
+	public JsonNode get(int index)
+	{
+		final JsonNode definition = definitions.get(index);
+		if (definition != null || source == null)
+		{
+			return definition;
+		}
+		
+		try
+		{
+			// Parsed at most a few times when first used concurrently, keeping the first
+			definitions.compareAndSet(index, null, source.parse(index));
+			return definitions.get(index);
+		}
+		catch (IOException exc)
+		{
+			throw new IllegalStateException("Definition " + names.get(index) + " could not be read, has the file changed?", exc);
+		}
+	}
+	
+	/**
+	 * @return The definition names, in the order of the file
+	 */
+	public List<String> getNames()
+	{
+		return names;
+	}
+	
+	public int size()
+	{
+		return names.size();
+	}
+	
+	/**
+	 * @return The references between the definitions, worked out on first use
+	 */
+	ReferenceGraph getReferenceGraph()
+	{
+		// Built at most a few times when first used concurrently, which does no harm
+		ReferenceGraph graph = referenceGraph;
+		if (graph == null)
+		{
+			graph = new ReferenceGraph(this);
+			referenceGraph = graph;
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,61 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Writes the XSD into a DOM {@link Document}
+ * 
+ * @author mha
+ */
+final class DomXsdOutput implements XsdOutput
+{
+	private final Document doc;
+	private Node current;
+	private int depth;
+	
+	DomXsdOutput(Document doc)
+	{
+		this.doc = doc;
+		this.current = doc;
+	}
+	
+	@Override
+	public void startElement(String name)
+	{
+		current = XmlUtil.createXsdElement(current, name);
+		depth++;
+	}
+
+	@Override
+	public void attribute(String name, String value)
+	{
+		getCurrentElement().setAttribute(name, value);
+	}
+
+	@Override
+	public void namespace(String prefix, String namespaceUri)
+	{
+		getCurrentElement().setAttribute("xmlns:" + prefix, namespaceUri);
+	}
+
+	@Override
+	public void endElement()
+	{
+		Assert.isTrue(depth > 0, "No element to end");
+		current = current.getParentNode();
+		depth--;
+	}
+	
+	Element getCurrentElement()
+	{
+		Assert.isTrue(depth > 0, "No element started");
+		return (Element) current;
+	}
+	
+	Document getDocument()
+	{
+		return doc;
+	}
+}
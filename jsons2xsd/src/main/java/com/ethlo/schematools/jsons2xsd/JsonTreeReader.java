@@ -0,0 +1,144 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Reads a tree as {@link ObjectMapper#readTree(java.io.Reader)} does, keeping the open objects
+ * and arrays in an explicit stack rather than recursing into them, so the nesting depth is
+ * limited by the heap rather than the stack of the thread.
+ * <p>
+ * The nodes are made by the node factory of the mapper, with numbers read as configured by
+ * {@link DeserializationFeature#USE_BIG_INTEGER_FOR_INTS} and
+ * {@link DeserializationFeature#USE_BIG_DECIMAL_FOR_FLOATS}.
+ *
+ * @author mha
+ */
+final class JsonTreeReader
+{
+	private JsonTreeReader()
+	{
+	}
+
+	/**
+	 * Read the first value of <code>parser</code>, which is closed
+	 */
+	static JsonNode read(ObjectMapper mapper, JsonParser parser) throws IOException
+	{
+		try (final JsonParser in = parser)
+		{
+			JsonToken token = in.nextToken();
+			if (token == null)
+			{
+				throw new JsonMappingException("No content to map due to end-of-input", in.getCurrentLocation());
+			}
+
+			final DeserializationConfig config = mapper.getDeserializationConfig();
+			final JsonNodeFactory nodes = config.getNodeFactory();
+			final Deque<JsonNode> open = new ArrayDeque<>();
+			JsonNode root = null;
+			String field = null;
+			do
+			{
+				final JsonNode value;
+				switch (token)
+				{
+					case FIELD_NAME:
+						field = in.getCurrentName();
+						continue;
+
+					case END_OBJECT:
+					case END_ARRAY:
+						open.pop();
+						continue;
+
+					case START_OBJECT:
+						value = nodes.objectNode();
+						break;
+
+					case START_ARRAY:
+						value = nodes.arrayNode();
+						break;
+
+					default:
+						value = scalar(config, nodes, in);
+						break;
+				}
+
+				final JsonNode parent = open.peek();
+				if (parent == null)
+				{
+					root = value;
+				}
+				else if (parent.isObject())
+				{
+					// A field given twice keeps its first position and its last value
+					((ObjectNode) parent).set(field, value);
+				}
+				else
+				{
+					((ArrayNode) parent).add(value);
+				}
+				if (value.isContainerNode())
+				{
+					open.push(value);
+				}
+			}
+			while (! open.isEmpty() && (token = in.nextToken()) != null);
+			return root;
+		}
+	}
+
+	private static JsonNode scalar(DeserializationConfig config, JsonNodeFactory nodes, JsonParser in) throws IOException
+	{
+		switch (in.getCurrentToken())
+		{
+			case VALUE_STRING:
+				return nodes.textNode(in.getText());
+
+			case VALUE_NUMBER_INT:
+				final JsonParser.NumberType intType = in.getNumberType();
+				if (intType == JsonParser.NumberType.BIG_INTEGER || config.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS))
+				{
+					return nodes.numberNode(in.getBigIntegerValue());
+				}
+				return intType == JsonParser.NumberType.INT ? nodes.numberNode(in.getIntValue()) : nodes.numberNode(in.getLongValue());
+
+			case VALUE_NUMBER_FLOAT:
+				if (in.getNumberType() == JsonParser.NumberType.BIG_DECIMAL || config.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+				{
+					return nodes.numberNode(in.getDecimalValue());
+				}
+				return nodes.numberNode(in.getDoubleValue());
+
+			case VALUE_TRUE:
+				return nodes.booleanNode(true);
+
+			case VALUE_FALSE:
+				return nodes.booleanNode(false);
+
+			case VALUE_EMBEDDED_OBJECT:
+				final Object embedded = in.getEmbeddedObject();
+				if (embedded == null)
+				{
+					return nodes.nullNode();
+				}
+				return embedded instanceof byte[] ? nodes.binaryNode((byte[]) embedded) : nodes.POJONode(embedded);
+
+			default:
+				return nodes.nullNode();
+		}
+	}
+}
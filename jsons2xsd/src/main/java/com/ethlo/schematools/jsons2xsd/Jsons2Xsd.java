@@ -0,0 +1,581 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.w3c.dom.Document;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+public class Jsons2Xsd {
+    private final static Jsons2XsdConverter converter = new Jsons2XsdConverter();
+
+    public enum OuterWrapping {
+        ELEMENT, TYPE
+    }
+
+
+    private static final Pattern unnamed = Pattern.compile("[\\s\"]");
+
+    private static final String[] prunedKeywords = {"additionalProperties", "additionalItems"};
+
+    /**
+     * Moves the definitions in place of the root properties, and removes boolean
+     * <code>additionalProperties</code> and <code>additionalItems</code> keywords.
+     * The tree is modified in place.
+     */
+    public static JsonNode upgradeToDbsSchema(JsonNode rootNode){
+    	if(rootNode.has("definitions")){
+    		ObjectNode object = (ObjectNode) rootNode;
+    		object.set("properties", rootNode.get("definitions"));
+    		object.remove("definitions");
+    		object.set("type", new TextNode("object"));
+    	}
+    	pruneKeywords(rootNode);
+    	return rootNode;
+    }
+
+    /**
+     * Walks the tree once, using an explicit stack, and removes the pruned keywords from every
+     * object where they have a boolean value. A property that happens to have the same name
+     * has a schema as value, and is left alone.
+     */
+    private static void pruneKeywords(JsonNode rootNode) {
+        final Deque<JsonNode> stack = new ArrayDeque<>();
+        stack.push(rootNode);
+        while (!stack.isEmpty()) {
+            final JsonNode node = stack.pop();
+            if (node.isObject()) {
+                final ObjectNode object = (ObjectNode) node;
+                for (String keyword : prunedKeywords) {
+                    if (object.path(keyword).isBoolean()) {
+                        object.remove(keyword);
+                    }
+                }
+            }
+            for (JsonNode child : node) {
+                if (child.isContainerNode()) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+    
+    public static Document convert(Reader jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws IOException {
+        return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+    }
+
+    public static Document convert(InputStream jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws IOException {
+        return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+    }
+
+    public static Document convert(byte[] jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws IOException {
+        return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+    }
+
+    public static Document convert(ByteBuffer jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws IOException {
+        return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+    }
+
+    public static Document convert(Path jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws IOException {
+        return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+    }
+
+    static void convert(ConversionContext ctx, XsdOutput out, JsonNode rootNode, String targetNameSpaceUri, OuterWrapping wrapping, String name) {
+        // The definitions take the place of the properties
+        final String propertiesKeyword = rootNode.has("definitions") ? "definitions" : "properties";
+        ctx.phase(ConversionMetrics.Phase.PREPARE);
+        rootNode=upgradeToDbsSchema(rootNode);
+        ctx.phase(ConversionMetrics.Phase.RENDER);
+        name=handleCamelCasing(name);
+
+        final String type = rootNode.path("type").textValue();
+        Assert.isTrue("object".equals(type), "root should have type=\"object\"");
+
+        final JsonNode properties = rootNode.get("properties");
+        Assert.notNull(properties, "\"properties\" property should be found in root of JSON schema\"");
+
+        startSchema(ctx, out, targetNameSpaceUri, wrapping, name);
+
+        if ("definitions".equals(propertiesKeyword)) {
+            doIterateRootDefinitions(ctx, out, properties, getRequiredList(rootNode));
+        }
+        else {
+            doIterate(ctx, out, propertiesKeyword, properties, getRequiredList(rootNode));
+        }
+
+        out.endElement();
+        out.endElement();
+
+        //handle external defs
+        final JsonNode definitions = rootNode.path("definitions");
+        Assert.notNull(definitions, "\"definitions\"  should be found in root of JSON schema\"");
+
+        doIterateDefinitions(ctx, out, definitions);
+
+        out.endElement();
+    }
+
+    /**
+     * Writes the schema element and the wrapping, leaving the root sequence open for the properties
+     */
+    static void startSchema(ConversionContext ctx, XsdOutput out, String targetNameSpaceUri, OuterWrapping wrapping, String name) {
+        out.startElement("schema");
+        out.attribute("targetNamespace", targetNameSpaceUri);
+        out.namespace(name.toLowerCase(), targetNameSpaceUri);
+        ctx.ns = name.toLowerCase();
+
+
+        out.attribute("elementFormDefault", "qualified");
+//		out.attribute("attributeFormDefault", "qualified");
+
+
+        if (wrapping == OuterWrapping.ELEMENT) {
+            out.startElement("element");
+            out.attribute("name", name);
+            out.attribute("type", name.toLowerCase() + ":" + name);
+            out.endElement();
+        }
+
+        out.startElement("complexType");
+        //if (wrapping == OuterWrapping.TYPE)
+        {
+            out.attribute("name", name);
+        }
+        out.startElement("sequence");
+    }
+
+    /**
+     * Writes the elements of the definitions moved in place of the root properties. They do not depend
+     * on each other, so they are rendered on the pool of the context, if any.
+     */
+    private static void doIterateRootDefinitions(ConversionContext ctx, XsdOutput out, JsonNode node, final List<String> requiredList) {
+        final List<Entry<String, JsonNode>> entries = new ArrayList<>(node.size());
+        final Iterator<Entry<String, JsonNode>> fieldIter = node.fields();
+        while (fieldIter.hasNext()) {
+            entries.add(fieldIter.next());
+        }
+
+        ParallelDefinitions.render(ctx, out, entries.size(), new ParallelDefinitions.Renderer() {
+            @Override
+            void render(ConversionContext ctx, XsdOutput out, int idx) {
+                final String key = entries.get(idx).getKey();
+                final Traversal traversal = new Traversal(ctx, out);
+                ctx.enter("definitions", key);
+                doIterateSingle(traversal, key, entries.get(idx).getValue(), requiredList.contains(key));
+                traversal.then(Traversal.leave(2));
+                traversal.run();
+            }
+        });
+    }
+
+    private static void doIterateDefinitions(ConversionContext ctx, XsdOutput out, JsonNode node) {
+        final Iterator<Entry<String, JsonNode>> fieldIter = node.fields();
+        while (fieldIter.hasNext()) {
+
+
+
+            //Create a complex type
+            //get properties
+            //call doiteration with properties
+
+            final Entry<String, JsonNode> entry = fieldIter.next();
+            final String key = entry.getKey();
+            final JsonNode val = entry.getValue();
+            ctx.enter("definitions", key);
+            if (key.equals("Link")) {
+                out.startElement("complexType");
+                out.attribute("name", key);
+                for (String attrName : new String[]{"href", "rel", "title", "method", "type"}) {
+                    out.startElement("attribute");
+                    out.attribute("name", attrName);
+                    out.attribute("type", "string");
+                    out.endElement();
+                }
+                out.endElement();
+            }
+            else {
+                final JsonNode properties = val.get("properties");
+                Assert.notNull(properties, "\"properties\" property should be found in \"" + key + "\"");
+
+                out.startElement("complexType");
+                out.attribute("name", key);
+                out.startElement("sequence");
+                doIterate(ctx, out, "properties", properties, getRequiredList(val));
+                out.endElement();
+                out.endElement();
+            }
+            ctx.leave(2);
+
+        }
+    }
+
+    /**
+     * @param keyword The keyword holding the properties, for the diagnostics
+     */
+    private static void doIterate(ConversionContext ctx, XsdOutput out, String keyword, JsonNode node, List<String> requiredList) {
+        final Traversal traversal = new Traversal(ctx, out);
+        doIterate(traversal, keyword, node, requiredList);
+        traversal.run();
+    }
+
+    /**
+     * Schedules the elements of the properties, rendered once the current step is done
+     */
+    private static void doIterate(Traversal traversal, final String keyword, JsonNode node, final List<String> requiredList) {
+        final Iterator<Entry<String, JsonNode>> fieldIter = node.fields();
+        while (fieldIter.hasNext()) {
+            final Entry<String, JsonNode> entry = fieldIter.next();
+            final String key = entry.getKey();
+            final JsonNode val = entry.getValue();
+            traversal.then(new Traversal.Step() {
+                @Override
+                void run(Traversal traversal) {
+                    traversal.ctx.enter(keyword, key);
+                    doIterateSingle(traversal, key, val, requiredList.contains(key));
+                    traversal.then(Traversal.leave(2));
+                }
+            });
+        }
+    }
+
+    /**
+     * Lower-cases the first letter of <code>name</code>, unless the second is upper case as in an acronym
+     */
+    static String handleCamelCasing(String name){
+    	if(name.isEmpty())
+    		return name;
+    	if(name.length() == 1 || !Character.isUpperCase(name.charAt(1)))
+    		return name.substring(0, 1).toLowerCase() + name.substring(1);
+    	else
+    		return name;
+    	
+    }
+    static String elementName(String key) {
+        String name;
+        if (!key.equals("link")) {
+            name = key.substring(0, 1).toUpperCase() + key.substring(1);
+        } else {
+            name = key;
+        }
+        return handleCamelCasing(name);
+    }
+
+    /**
+     * Name of the element for the <code>count</code>th branch of a oneOf, see {@link #descriptionName(JsonNode)}
+     */
+    static String choiceElementName(JsonNode branch, int count) {
+        final String description=descriptionName(branch);
+        return description != null ? description : "dummyElement"+count;
+    }
+
+    /**
+     * Name of the element holding the items of the array <code>name</code>, see {@link #descriptionName(JsonNode)}
+     */
+    static String arrayElementName(String name, JsonNode arrItems) {
+        final String description=descriptionName(arrItems);
+        return description != null ? description : "dummyArrayElement_"+name;
+    }
+
+    /**
+     * The description of <code>schema</code> without whitespace and quotes, as the name of an element,
+     * or null when it has none or nothing is left of it
+     */
+    private static String descriptionName(JsonNode schema) {
+        if(!schema.has("description"))
+            return null;
+        final String description=unnamed.matcher(schema.get("description").asText()).replaceAll("");
+        return description.isEmpty() ? null : description;
+    }
+
+    /**
+     * Whether <code>key</code> is removed by {@link #upgradeToDbsSchema(JsonNode)} when it has a boolean value
+     */
+    static boolean isPrunedKeyword(String key) {
+        for (String keyword : prunedKeywords) {
+            if (keyword.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void doIterateSingle(Traversal traversal, String key, JsonNode val, boolean required) {
+        final ConversionContext ctx = traversal.ctx;
+        final XsdOutput out = traversal.out;
+        final String xsdType = determineXsdType(ctx, key, val);
+        final String name = elementName(key);
+        
+        out.startElement("element");
+        out.attribute("name", name);
+
+        if (!required) {
+            // Not required
+            out.attribute("minOccurs", "0");
+        }
+
+        // Simple types get their "type" attribute from the handlers, unless they add a restriction
+        switch (xsdType) {
+            case "array":
+                handleArray(traversal, name, val);
+                break;
+
+            case "decimal":
+            case "int":
+                handleNumber(out, xsdType, val);
+                break;
+
+            case "enum":
+                handleEnum(out, val);
+                break;
+
+            case "object":
+            	//System.out.println("-----------------"+key);
+                handleObject(traversal, val);
+                break;
+
+            case "string":
+                handleString(ctx, out, val);
+                break;
+
+            case "reference":
+                handleReference(ctx, out, val);
+                break;
+
+            default:
+                out.attribute("type", xsdType);
+                break;
+        }
+
+        traversal.then(Traversal.end(1));
+    }
+
+
+    static void handleReference(ConversionContext ctx, XsdOutput out, JsonNode val) {
+        ctx.reference();
+        final JsonNode refs = val.get("$ref");
+        String fixRef = refs.asText().replace("#/definitions/", ctx.ns + ":");
+        out.attribute("type", fixRef);
+    }
+
+    static void handleString(ConversionContext ctx, XsdOutput out, JsonNode val) {
+        final Integer minimumLength = getIntVal(val, "minLength");
+        final Integer maximumLength = getIntVal(val, "maxLength");
+        final String expression = ctx.types.getPattern(val);
+
+
+        if (minimumLength != null || maximumLength != null || expression != null) {
+            out.startElement("simpleType");
+            out.startElement("restriction");
+            out.attribute("base", "string");
+
+            if (minimumLength != null) {
+                out.startElement("minLength");
+                out.attribute("value", Integer.toString(minimumLength));
+                out.endElement();
+            }
+
+            if (maximumLength != null) {
+                out.startElement("maxLength");
+                out.attribute("value", Integer.toString(maximumLength));
+                out.endElement();
+            }
+
+            if (expression != null) {
+                out.startElement("pattern");
+                out.attribute("value", expression);
+                out.endElement();
+            }
+            out.endElement();
+            out.endElement();
+        }
+        else {
+            out.attribute("type", "string");
+        }
+    }
+
+    private static void handleObject(Traversal traversal, JsonNode val) {
+        final ConversionContext ctx = traversal.ctx;
+        final XsdOutput out = traversal.out;
+        final JsonNode properties = val.get("properties");
+        if (properties != null && !val.has("oneOf")) {
+            Assert.notNull(properties, "'object' type must have a 'properties' attribute");
+            out.startElement("complexType");
+            out.startElement("sequence");
+            doIterate(traversal, "properties", properties, getRequiredList(val));
+            traversal.then(Traversal.end(2));
+        }
+        if(val.has("oneOf")){
+            out.startElement("complexType");
+            out.startElement("sequence");
+            out.startElement("choice");
+
+            // Every branch becomes one alternative of the choice, named after its description if it has one
+            final JsonNode branches = val.get("oneOf");
+            if (branches.isArray()) {
+            	int count=1;
+                for (final JsonNode branch : branches) {
+                	final String suggestedNodeName=choiceElementName(branch, count);
+                    final int index = count - 1;
+
+                    traversal.then(new Traversal.Step() {
+                        @Override
+                        void run(Traversal traversal) {
+                            traversal.ctx.enter("oneOf", index);
+                            traversal.ctx.warn(ConversionDiagnostics.Kind.CHOICE_ELEMENT_NAME, suggestedNodeName);
+                            doIterateSingle(traversal, suggestedNodeName, branch, true);
+                            traversal.then(Traversal.leave(2));
+                        }
+                    });
+                	count++;
+                }
+            }
+            else {
+            	ctx.enter("oneOf");
+            	ctx.warn(ConversionDiagnostics.Kind.MALFORMED_ONEOF, null);
+            	ctx.leave(1);
+            }
+            traversal.then(Traversal.end(3));
+        }
+
+    }
+
+    static void handleEnum(XsdOutput out, JsonNode val) {
+        out.startElement("simpleType");
+        out.startElement("restriction");
+        out.attribute("base", "string");
+        final JsonNode enumNode = val.get("enum");
+        for (int i = 0; i < enumNode.size(); i++) {
+            final String enumVal = enumNode.path(i).asText();
+            out.startElement("enumeration");
+            out.attribute("value", enumVal);
+            out.endElement();
+        }
+        out.endElement();
+        out.endElement();
+    }
+
+    static void handleNumber(XsdOutput out, String xsdType, JsonNode jsonNode) {
+        final Integer minimum = getIntVal(jsonNode, "minimum");
+        final Integer maximum = getIntVal(jsonNode, "maximum");
+
+        if (minimum != null || maximum != null) {
+            out.startElement("simpleType");
+            out.startElement("restriction");
+            out.attribute("base", xsdType);
+
+            if (minimum != null) {
+                out.startElement("minInclusive");
+                out.attribute("value", Integer.toString(minimum));
+                out.endElement();
+            }
+
+            if (maximum != null) {
+                out.startElement("maxInclusive");
+                out.attribute("value", Integer.toString(maximum));
+                out.endElement();
+            }
+            out.endElement();
+            out.endElement();
+        }
+        else {
+            out.attribute("type", xsdType);
+        }
+    }
+
+    private static void handleArray(Traversal traversal, String name, JsonNode jsonNode) {
+        final ConversionContext ctx = traversal.ctx;
+        final XsdOutput out = traversal.out;
+        final JsonNode arrItems = jsonNode.path("items");
+        final String suggestedArrayElementName=arrayElementName(name, arrItems);
+        
+        ctx.enter("items");
+        ctx.warn(ConversionDiagnostics.Kind.ARRAY_ELEMENT_NAME, suggestedArrayElementName);
+        
+//		final String arrayXsdType = getType(arrItems.path("type").textValue(), arrItems.path("format").textValue());
+        final String arrayXsdType = determineXsdType(ctx, arrItems.path("type").textValue(), arrItems);
+        out.startElement("complexType");
+        out.startElement("sequence");
+        out.startElement("element");
+        out.attribute("name", suggestedArrayElementName);
+
+        // Minimum items
+        final Integer minItems = getIntVal(jsonNode, "minItems");
+        out.attribute("minOccurs", minItems != null ? Integer.toString(minItems) : "0");
+
+        // Max Items
+        final Integer maxItems = getIntVal(jsonNode, "maxItems");
+        out.attribute("maxOccurs", maxItems != null ? Integer.toString(maxItems) : "unbounded");
+
+        if (arrayXsdType.equals("reference")) {
+            handleReference(ctx, out, arrItems);
+        } else if (arrayXsdType.equals("object")) {
+            handleObject(traversal, arrItems);
+        } else {
+            out.attribute("type", arrayXsdType);
+        }
+        // TODO: Set restrictions for the array type, and possibly recurse into the type if "object"
+
+        traversal.then(Traversal.end(3));
+        traversal.then(Traversal.leave(1));
+    }
+
+    static String determineXsdType(ConversionContext ctx, String key, JsonNode node) {
+        ctx.visit();
+    	if(key==null)
+    		ctx.warn(ConversionDiagnostics.Kind.MALFORMED_ARRAY, null);
+    	if(key.toLowerCase().equals("oneof") && node.toString().contains("[")){
+    		return "object";
+    	}
+        String jsonType = node.path("type").textValue();
+        final String jsonFormat = node.path("format").textValue();
+        final boolean isEnum = node.get("enum") != null;
+        final boolean isRef = node.get("$ref") != null;
+        if (isRef) {
+            return "reference";
+        } else if (isEnum) {
+            return "enum";
+        } else {
+            if (jsonType == null) {
+                // The message is only built on failure, as it writes out the whole node
+                throw new IllegalArgumentException("type must be specified on node '" + key + "': " + node);
+            }
+            final String xsdType = ctx.types.getXsdType(jsonType, jsonFormat);
+            Assert.notNull(xsdType, "Unable to determine XSD type for json type=" + jsonType + ", format=" + jsonFormat);
+            return xsdType;
+        }
+
+    }
+
+    static Integer getIntVal(JsonNode node, String attribute) {
+        return node.get(attribute) != null ? node.get(attribute).intValue() : null;
+    }
+
+
+    static List<String> getRequiredList(JsonNode jsonNode) {
+        if (jsonNode.path("required").isMissingNode()) {
+            return Collections.emptyList();
+        }
+        Assert.isTrue(jsonNode.path("required").isArray(), "required must have type: string array");
+        List<String> requiredList = new ArrayList<>();
+        for (JsonNode requiredField : jsonNode.withArray("required")) {
+            Assert.isTrue(requiredField.isTextual(), "required must be string");
+            requiredList.add(requiredField.asText());
+        }
+        return requiredList;
+    }
+}
@@ -0,0 +1,538 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Converts many JSON schemas at once, writing one XSD per schema.
+ * <p>
+ * The schemas are split among the threads of a {@link ForkJoinPool}, so idle threads
+ * steal work from busy ones when some schemas are larger than others. A schema that
+ * fails to convert is reported in the {@link Result}, and does not stop the others.
+ * <p>
+ * The XSDs are written to a directory, as they are or gzipped, or into a single zip archive,
+ * see {@link Output}. Each is streamed to its file or entry as it is converted; the layout of
+ * the text is chosen with {@link Jsons2XsdConverter#withOutputProfile(OutputProfile)}.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdBatch
+{
+	/**
+	 * Decides the target namespace and the name of the XSD for each schema
+	 */
+	public interface Naming
+	{
+		/**
+		 * @param schema The schema, relative to the directory of the batch
+		 */
+		String getTargetNamespace(Path schema);
+
+		/**
+		 * @param schema The schema, relative to the directory of the batch
+		 */
+		String getName(Path schema);
+	}
+
+	private final Jsons2XsdConverter converter;
+	private final ForkJoinPool pool;
+
+	public Jsons2XsdBatch(Jsons2XsdConverter converter, ForkJoinPool pool)
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.notNull(pool, "pool cannot be null");
+		this.converter = converter;
+		this.pool = pool;
+	}
+
+	/**
+	 * Find the files below <code>directory</code> matching a glob, like <code>**.json</code>
+	 *
+	 * @return The files relative to <code>directory</code>, sorted
+	 */
+	public static List<Path> findSchemas(final Path directory, String glob) throws IOException
+	{
+		final PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + glob);
+		final List<Path> schemas = new ArrayList<>();
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+			{
+				final Path relative = directory.relativize(file);
+				if (attrs.isRegularFile() && matcher.matches(relative))
+				{
+					schemas.add(relative);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(schemas);
+		return schemas;
+	}
+
+	/**
+	 * Naming from patterns, where <code>{name}</code> is replaced with the file name of the
+	 * schema and <code>{path}</code> with its relative path, both without extension
+	 */
+	public static Naming naming(String namespacePattern, String namePattern)
+	{
+		return new PatternNaming(namespacePattern, namePattern);
+	}
+
+	/**
+	 * XSDs written to <code>outputDirectory</code>, in the same relative directories as the schemas
+	 */
+	public static Output directory(Path outputDirectory)
+	{
+		return new DirectoryOutput(outputDirectory, false);
+	}
+
+	/**
+	 * As {@link #directory(Path)}, gzipped, with <code>.xsd.gz</code> files
+	 */
+	public static Output gzip(Path outputDirectory)
+	{
+		return new DirectoryOutput(outputDirectory, true);
+	}
+
+	/**
+	 * XSDs written into a zip archive at <code>file</code>, with entries named by the relative
+	 * paths of the schemas, in the order they are converted in. The archive is complete once the
+	 * output is closed.
+	 */
+	public static Output zip(Path file) throws IOException
+	{
+		Assert.notNull(file, "file cannot be null");
+		return new ZipArchiveOutput(new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file))), true);
+	}
+
+	/**
+	 * As {@link #zip(Path)}, to a stream that is finished, but not closed, when the output is closed
+	 */
+	public static Output zip(OutputStream out)
+	{
+		Assert.notNull(out, "out cannot be null");
+		return new ZipArchiveOutput(new ZipOutputStream(out), false);
+	}
+
+	/**
+	 * Convert the schemas as done by {@link Jsons2Xsd}
+	 *
+	 * @param directory The directory the schemas are relative to
+	 * @param outputDirectory Where the XSDs are written, in the same relative directories as the schemas
+	 */
+	public Result convert(Path directory, List<Path> schemas, Path outputDirectory, Naming naming, Jsons2Xsd.OuterWrapping wrapping)
+	{
+		return convert(directory, schemas, directory(outputDirectory), naming, wrapping);
+	}
+
+	/**
+	 * Convert the schemas as done by {@link Jsons2Xsd}, writing the XSDs to <code>output</code>
+	 *
+	 * @param directory The directory the schemas are relative to
+	 */
+	public Result convert(Path directory, List<Path> schemas, Output output, Naming naming, final Jsons2Xsd.OuterWrapping wrapping)
+	{
+		return run(new Job(directory, schemas, output, naming)
+		{
+			@Override
+			void convert(Path schema, OutputStream xsd, String targetNameSpaceUri, String name, ConversionDiagnostics diagnostics) throws IOException
+			{
+				converter.convert(schema, xsd, targetNameSpaceUri, wrapping, name, diagnostics);
+			}
+		});
+	}
+
+	/**
+	 * Convert the schemas against shared definitions, as done by {@link Jsons2XsdSingleFile}
+	 *
+	 * @param directory The directory the schemas are relative to
+	 * @param outputDirectory Where the XSDs are written, in the same relative directories as the schemas
+	 */
+	public Result convert(Path directory, List<Path> schemas, Path outputDirectory, Naming naming, DefinitionsRegistry definitions, Jsons2XsdSingleFile.OuterWrapping wrapping)
+	{
+		return convert(directory, schemas, directory(outputDirectory), naming, definitions, wrapping);
+	}
+
+	/**
+	 * Convert the schemas against shared definitions, as done by {@link Jsons2XsdSingleFile}, writing the XSDs to <code>output</code>
+	 *
+	 * @param directory The directory the schemas are relative to
+	 */
+	public Result convert(Path directory, List<Path> schemas, Output output, Naming naming, final DefinitionsRegistry definitions, final Jsons2XsdSingleFile.OuterWrapping wrapping)
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		return run(new Job(directory, schemas, output, naming)
+		{
+			@Override
+			void convert(Path schema, OutputStream xsd, String targetNameSpaceUri, String name, ConversionDiagnostics diagnostics) throws IOException
+			{
+				try (final Reader reader = Files.newBufferedReader(schema, StandardCharsets.UTF_8))
+				{
+					converter.convert(reader, definitions, xsd, targetNameSpaceUri, wrapping, name);
+				}
+			}
+		});
+	}
+
+	private Result run(Job job)
+	{
+		final long start = System.nanoTime();
+		if (! job.schemas.isEmpty())
+		{
+			pool.invoke(new ConvertTask(job, 0, job.schemas.size()));
+		}
+		job.result.elapsedNanos = System.nanoTime() - start;
+		return job.result;
+	}
+
+	/**
+	 * The schemas of one call, and how to convert each of them
+	 */
+	private static abstract class Job
+	{
+		final Path directory;
+		final List<Path> schemas;
+		final Output output;
+		final Naming naming;
+		final Result result = new Result();
+
+		Job(Path directory, List<Path> schemas, Output output, Naming naming)
+		{
+			Assert.notNull(directory, "directory cannot be null");
+			Assert.notNull(schemas, "schemas cannot be null");
+			Assert.notNull(output, "output cannot be null");
+			Assert.notNull(naming, "naming cannot be null");
+			this.directory = directory;
+			this.schemas = new ArrayList<>(schemas);
+			this.output = output;
+			this.naming = naming;
+		}
+
+		abstract void convert(Path schema, OutputStream xsd, String targetNameSpaceUri, String name, ConversionDiagnostics diagnostics) throws IOException;
+
+		void convert(final Path schema)
+		{
+			final Path source = directory.resolve(schema.toString());
+			final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+			try
+			{
+				final long written = output.write(schema, new Content()
+				{
+					@Override
+					void writeTo(OutputStream xsd) throws IOException
+					{
+						convert(source, xsd, naming.getTargetNamespace(schema), naming.getName(schema), diagnostics);
+					}
+				});
+				if (! diagnostics.isEmpty())
+				{
+					result.diagnostics.put(schema, diagnostics);
+				}
+				result.converted.incrementAndGet();
+				result.bytesRead.addAndGet(Files.size(source));
+				result.bytesWritten.addAndGet(written);
+			}
+			catch (Exception exc)
+			{
+				result.failures.put(schema, exc);
+			}
+		}
+	}
+
+	/**
+	 * Where the XSDs of a batch are written, see {@link Jsons2XsdBatch#directory(Path)},
+	 * {@link Jsons2XsdBatch#gzip(Path)} and {@link Jsons2XsdBatch#zip(Path)}. An output can take
+	 * the XSDs of several batches, and is closed by the caller once they are done.
+	 */
+	public static abstract class Output implements Closeable
+	{
+		Output()
+		{
+		}
+
+		/**
+		 * Write the XSD of <code>schema</code>, leaving nothing behind on failure. Called by many threads at once.
+		 *
+		 * @param schema The schema, relative to the directory of the batch
+		 * @return The number of bytes written
+		 */
+		abstract long write(Path schema, Content xsd) throws IOException;
+
+		@Override
+		public void close() throws IOException
+		{
+		}
+	}
+
+	/**
+	 * An XSD, converted as it is written
+	 */
+	static abstract class Content
+	{
+		abstract void writeTo(OutputStream xsd) throws IOException;
+	}
+
+	private static final class DirectoryOutput extends Output
+	{
+		private final Path outputDirectory;
+		private final boolean gzip;
+
+		DirectoryOutput(Path outputDirectory, boolean gzip)
+		{
+			Assert.notNull(outputDirectory, "outputDirectory cannot be null");
+			this.outputDirectory = outputDirectory;
+			this.gzip = gzip;
+		}
+
+		@Override
+		long write(Path schema, Content xsd) throws IOException
+		{
+			final Path target = outputDirectory.resolve(withoutExtension(schema) + (gzip ? ".xsd.gz" : ".xsd"));
+			try
+			{
+				Files.createDirectories(target.getParent());
+				// The deflater buffers the gzipped bytes itself
+				try (final OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(target), 8192) : new BufferedOutputStream(Files.newOutputStream(target)))
+				{
+					xsd.writeTo(out);
+				}
+				return Files.size(target);
+			}
+			catch (IOException | RuntimeException exc)
+			{
+				try
+				{
+					Files.deleteIfExists(target);
+				}
+				catch (IOException ignored)
+				{
+					// The failure is reported
+				}
+				throw exc;
+			}
+		}
+	}
+
+	/**
+	 * Entries can only be written one at a time, so every XSD is converted into a buffer of the
+	 * converting thread first, reused for the next, and copied into the archive once complete.
+	 * The entries are in the order the schemas were converted in.
+	 */
+	private static final class ZipArchiveOutput extends Output
+	{
+		private final ZipOutputStream zip;
+		private final boolean closeStream;
+
+		private final ThreadLocal<ByteArrayOutputStream> buffers = new ThreadLocal<ByteArrayOutputStream>()
+		{
+			@Override
+			protected ByteArrayOutputStream initialValue()
+			{
+				return new ByteArrayOutputStream(8192);
+			}
+		};
+
+		ZipArchiveOutput(ZipOutputStream zip, boolean closeStream)
+		{
+			this.zip = zip;
+			this.closeStream = closeStream;
+		}
+
+		@Override
+		long write(Path schema, Content xsd) throws IOException
+		{
+			final ByteArrayOutputStream buffer = buffers.get();
+			buffer.reset();
+			xsd.writeTo(buffer);
+
+			final ZipEntry entry = new ZipEntry(withoutExtension(schema).replace(schema.getFileSystem().getSeparator(), "/") + ".xsd");
+			synchronized (zip)
+			{
+				zip.putNextEntry(entry);
+				buffer.writeTo(zip);
+				zip.closeEntry();
+			}
+			return entry.getCompressedSize();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			synchronized (zip)
+			{
+				if (closeStream)
+				{
+					zip.close();
+				}
+				else
+				{
+					zip.finish();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits the schemas in halves until a single one is left
+	 */
+	private static final class ConvertTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+		private final int from;
+		private final int to;
+
+		ConvertTask(Job job, int from, int to)
+		{
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				job.convert(job.schemas.get(from));
+			}
+			else
+			{
+				final int middle = (from + to) >>> 1;
+				invokeAll(new ConvertTask(job, from, middle), new ConvertTask(job, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Outcome of a batch
+	 */
+	public static final class Result
+	{
+		private final AtomicLong converted = new AtomicLong();
+		private final AtomicLong bytesRead = new AtomicLong();
+		private final AtomicLong bytesWritten = new AtomicLong();
+		private final Map<Path, Exception> failures = new ConcurrentSkipListMap<>();
+		private final Map<Path, ConversionDiagnostics> diagnostics = new ConcurrentSkipListMap<>();
+		private long elapsedNanos;
+
+		public long getConverted()
+		{
+			return converted.get();
+		}
+
+		/**
+		 * @return The schemas that could not be converted, with the reason, sorted by path
+		 */
+		public Map<Path, Exception> getFailures()
+		{
+			return Collections.unmodifiableMap(failures);
+		}
+
+		/**
+		 * @return The diagnostics of the converted schemas that have any, sorted by path
+		 */
+		public Map<Path, ConversionDiagnostics> getDiagnostics()
+		{
+			return Collections.unmodifiableMap(diagnostics);
+		}
+
+		public long getBytesRead()
+		{
+			return bytesRead.get();
+		}
+
+		public long getBytesWritten()
+		{
+			return bytesWritten.get();
+		}
+
+		public long getElapsed(TimeUnit unit)
+		{
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @return Converted schemas per second
+		 */
+		public double getThroughput()
+		{
+			return elapsedNanos > 0 ? converted.get() * 1e9 / elapsedNanos : 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			final double seconds = elapsedNanos / 1e9;
+			return String.format("Converted %d of %d schemas in %.2f s (%.1f schemas/s, %.2f MB/s read)",
+				getConverted(), getConverted() + failures.size(), seconds, getThroughput(),
+				seconds > 0 ? getBytesRead() / seconds / (1024 * 1024) : 0);
+		}
+	}
+
+	private static final class PatternNaming implements Naming
+	{
+		private final String namespacePattern;
+		private final String namePattern;
+
+		PatternNaming(String namespacePattern, String namePattern)
+		{
+			Assert.notNull(namespacePattern, "namespacePattern cannot be null");
+			Assert.notNull(namePattern, "namePattern cannot be null");
+			this.namespacePattern = namespacePattern;
+			this.namePattern = namePattern;
+		}
+
+		@Override
+		public String getTargetNamespace(Path schema)
+		{
+			return expand(namespacePattern, schema);
+		}
+
+		@Override
+		public String getName(Path schema)
+		{
+			return expand(namePattern, schema);
+		}
+
+		private static String expand(String pattern, Path schema)
+		{
+			final String path = withoutExtension(schema).replace(schema.getFileSystem().getSeparator(), "/");
+			final String name = withoutExtension(schema.getFileName());
+			return pattern.replace("{path}", path).replace("{name}", name);
+		}
+	}
+
+	static String withoutExtension(Path path)
+	{
+		final String name = path.toString();
+		final int dot = name.lastIndexOf('.');
+		return dot > name.lastIndexOf(path.getFileSystem().getSeparator()) ? name.substring(0, dot) : name;
+	}
+}
@@ -0,0 +1,498 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache in front of a {@link Jsons2XsdConverter}.
+ * <p>
+ * Conversions are keyed by a SHA-256 hash of the JSON schema, with whitespace outside
+ * of strings and a leading byte order mark ignored, together with every conversion
+ * parameter. A hit writes the stored XSD bytes without parsing anything. The XSD is kept
+ * in memory, and optionally in a directory shared between runs, each bounded in size
+ * and evicting the least recently used entries first.
+ * <p>
+ * This relies on the conversion being deterministic: the same schema and parameters
+ * always give the same bytes. The schemas are expected in UTF-8.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdCache
+{
+	/**
+	 * Part of every key; change it when the XSD produced for the same input changes
+	 */
+	private static final int FORMAT_VERSION = 4;
+
+	private static final String SUFFIX = ".xsd";
+
+	private final Jsons2XsdConverter converter;
+	private final String typeMappings;
+	private final MemoryStore memory;
+	private final DiskStore disk;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	// The definitions parsed last, as the same file is typically used for many schemas
+	private volatile LoadedDefinitions lastDefinitions;
+
+	/**
+	 * A cache held in memory only
+	 */
+	public Jsons2XsdCache(Jsons2XsdConverter converter, long maxMemoryBytes)
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.isTrue(maxMemoryBytes >= 0, "maxMemoryBytes cannot be negative");
+		this.converter = converter;
+		this.typeMappings = converter.getTypeMapper().toString();
+		this.memory = new MemoryStore(maxMemoryBytes);
+		this.disk = null;
+	}
+
+	/**
+	 * A cache held in memory and in <code>directory</code>, which is created if missing.
+	 * Entries already in the directory are used, oldest first in line for eviction.
+	 */
+	public Jsons2XsdCache(Jsons2XsdConverter converter, long maxMemoryBytes, Path directory, long maxDirectoryBytes) throws IOException
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.isTrue(maxMemoryBytes >= 0, "maxMemoryBytes cannot be negative");
+		Assert.notNull(directory, "directory cannot be null");
+		Assert.isTrue(maxDirectoryBytes >= 0, "maxDirectoryBytes cannot be negative");
+		this.converter = converter;
+		this.typeMappings = converter.getTypeMapper().toString();
+		this.memory = new MemoryStore(maxMemoryBytes);
+		this.disk = new DiskStore(directory, maxDirectoryBytes);
+	}
+
+	/**
+	 * Convert as done by {@link Jsons2Xsd}
+	 */
+	public void convert(byte[] jsonSchema, OutputStream xsd, final String targetNameSpaceUri, final Jsons2Xsd.OuterWrapping wrapping, final String name) throws IOException
+	{
+		final String key = newKey("jsons2xsd").add(jsonSchema).add(targetNameSpaceUri).add(wrapping.name()).add(name).build();
+		write(key, jsonSchema, xsd, new Miss()
+		{
+			@Override
+			void convert(Reader jsonSchema, OutputStream xsd) throws IOException
+			{
+				converter.convert(jsonSchema, xsd, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+
+	/**
+	 * Convert against a separate definitions file, as done by {@link Jsons2XsdSingleFile}
+	 */
+	public void convert(byte[] jsonSchema, final byte[] definitionSchema, OutputStream xsd, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		Assert.notNull(definitionSchema, "definitionSchema cannot be null");
+		final String definitionsKey = new KeyBuilder("definitions").add(definitionSchema).build();
+		final String key = newKey("singlefile").add(jsonSchema).add(definitionsKey).add(targetNameSpaceUri).add(wrapping.name()).add(name).build();
+		write(key, jsonSchema, xsd, new Miss()
+		{
+			@Override
+			void convert(Reader jsonSchema, OutputStream xsd) throws IOException
+			{
+				converter.convert(jsonSchema, loadDefinitions(definitionsKey, definitionSchema), xsd, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+
+	/**
+	 * Convert with the definitions inline, as done by {@link Jsons2XsdDefinitions}
+	 */
+	public void convert(byte[] jsonSchema, OutputStream xsd, final String targetNameSpaceUri, final Jsons2XsdDefinitions.OuterWrapping wrapping, final String name) throws IOException
+	{
+		final String key = newKey("definitions-inline").add(jsonSchema).add(targetNameSpaceUri).add(wrapping.name()).add(name).build();
+		write(key, jsonSchema, xsd, new Miss()
+		{
+			@Override
+			void convert(Reader jsonSchema, OutputStream xsd) throws IOException
+			{
+				converter.convert(jsonSchema, xsd, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	private void write(String key, byte[] jsonSchema, OutputStream xsd, Miss miss) throws IOException
+	{
+		Assert.notNull(xsd, "xsd cannot be null");
+		byte[] cached = memory.get(key);
+		if (cached == null && disk != null)
+		{
+			cached = disk.get(key);
+			if (cached != null)
+			{
+				memory.put(key, cached);
+			}
+		}
+
+		if (cached != null)
+		{
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			miss.convert(new InputStreamReader(new ByteArrayInputStream(jsonSchema), StandardCharsets.UTF_8), buffer);
+			cached = buffer.toByteArray();
+			memory.put(key, cached);
+			if (disk != null)
+			{
+				disk.put(key, cached);
+			}
+		}
+		xsd.write(cached);
+		xsd.flush();
+	}
+
+	/**
+	 * Starts a key with the type mappings and the layout, as they change the output as much as the parameters do
+	 */
+	private KeyBuilder newKey(String kind)
+	{
+		return new KeyBuilder(kind).add(typeMappings).add(Boolean.toString(converter.isSharedTypes())).add(converter.getOutputProfile().name());
+	}
+
+	private DefinitionsRegistry loadDefinitions(String key, byte[] definitionSchema) throws IOException
+	{
+		final LoadedDefinitions last = lastDefinitions;
+		if (last != null && last.key.equals(key))
+		{
+			return last.registry;
+		}
+		final DefinitionsRegistry registry = converter.loadDefinitions(definitionSchema);
+		lastDefinitions = new LoadedDefinitions(key, registry);
+		return registry;
+	}
+
+	/**
+	 * Produces the XSD when it is not cached
+	 */
+	private static abstract class Miss
+	{
+		abstract void convert(Reader jsonSchema, OutputStream xsd) throws IOException;
+	}
+
+	private static final class LoadedDefinitions
+	{
+		private final String key;
+		private final DefinitionsRegistry registry;
+
+		private LoadedDefinitions(String key, DefinitionsRegistry registry)
+		{
+			this.key = key;
+			this.registry = registry;
+		}
+	}
+
+	/**
+	 * Hashes the parts of a key, each prefixed by its length so that they cannot run into each other
+	 */
+	private static final class KeyBuilder
+	{
+		private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+		private final MessageDigest digest;
+		private final byte[] buffer = new byte[8192];
+
+		private KeyBuilder(String kind)
+		{
+			try
+			{
+				this.digest = MessageDigest.getInstance("SHA-256");
+			}
+			catch (NoSuchAlgorithmException exc)
+			{
+				// Every Java platform is required to support SHA-256
+				throw new IllegalStateException(exc);
+			}
+			addInt(FORMAT_VERSION);
+			add(kind);
+		}
+
+		KeyBuilder add(String value)
+		{
+			if (value == null)
+			{
+				addInt(-1);
+			}
+			else
+			{
+				final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				addInt(bytes.length);
+				digest.update(bytes);
+			}
+			return this;
+		}
+
+		/**
+		 * Add a JSON document, skipping the whitespace between tokens
+		 */
+		KeyBuilder add(byte[] json)
+		{
+			Assert.notNull(json, "jsonSchema cannot be null");
+			int start = 0;
+			if (json.length >= 3 && (json[0] & 0xFF) == 0xEF && (json[1] & 0xFF) == 0xBB && (json[2] & 0xFF) == 0xBF)
+			{
+				start = 3;
+			}
+
+			int length = 0;
+			int total = 0;
+			boolean inString = false;
+			boolean escaped = false;
+			for (int i = start; i < json.length; i++)
+			{
+				final byte b = json[i];
+				if (inString)
+				{
+					if (escaped)
+					{
+						escaped = false;
+					}
+					else if (b == '\\')
+					{
+						escaped = true;
+					}
+					else if (b == '"')
+					{
+						inString = false;
+					}
+				}
+				else if (b == ' ' || b == '\t' || b == '\n' || b == '\r')
+				{
+					continue;
+				}
+				else if (b == '"')
+				{
+					inString = true;
+				}
+
+				buffer[length++] = b;
+				if (length == buffer.length)
+				{
+					digest.update(buffer, 0, length);
+					total += length;
+					length = 0;
+				}
+			}
+			digest.update(buffer, 0, length);
+			total += length;
+
+			// The length goes last, as it is only known now
+			addInt(total);
+			return this;
+		}
+
+		private void addInt(int value)
+		{
+			digest.update((byte) (value >>> 24));
+			digest.update((byte) (value >>> 16));
+			digest.update((byte) (value >>> 8));
+			digest.update((byte) value);
+		}
+
+		String build()
+		{
+			final byte[] hash = digest.digest();
+			final char[] chars = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++)
+			{
+				chars[i * 2] = HEX[(hash[i] >>> 4) & 0xF];
+				chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+			}
+			return new String(chars);
+		}
+	}
+
+	private static final class MemoryStore
+	{
+		private final long maxBytes;
+		private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+		private long bytes;
+
+		private MemoryStore(long maxBytes)
+		{
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized byte[] get(String key)
+		{
+			return entries.get(key);
+		}
+
+		synchronized void put(String key, byte[] value)
+		{
+			if (value.length > maxBytes)
+			{
+				return;
+			}
+
+			final byte[] previous = entries.put(key, value);
+			bytes += value.length - (previous != null ? previous.length : 0);
+			final Iterator<byte[]> eldest = entries.values().iterator();
+			while (bytes > maxBytes)
+			{
+				bytes -= eldest.next().length;
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * One file per entry, named by its key. The last modified time of the files records
+	 * their use, so the eviction order survives restarts. Files removed by others are
+	 * treated as misses.
+	 */
+	private static final class DiskStore
+	{
+		private final Path directory;
+		private final long maxBytes;
+		private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+		private long bytes;
+
+		private DiskStore(Path directory, long maxBytes) throws IOException
+		{
+			this.directory = directory;
+			this.maxBytes = maxBytes;
+			Files.createDirectories(directory);
+
+			final List<Path> files = new ArrayList<>();
+			try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX))
+			{
+				for (Path file : stream)
+				{
+					files.add(file);
+				}
+			}
+
+			final Map<Path, FileTime> modified = new LinkedHashMap<>();
+			for (Path file : files)
+			{
+				modified.put(file, Files.getLastModifiedTime(file));
+			}
+			Collections.sort(files, new Comparator<Path>()
+			{
+				@Override
+				public int compare(Path a, Path b)
+				{
+					return modified.get(a).compareTo(modified.get(b));
+				}
+			});
+
+			for (Path file : files)
+			{
+				final String fileName = file.getFileName().toString();
+				final long size = Files.size(file);
+				sizes.put(fileName.substring(0, fileName.length() - SUFFIX.length()), size);
+				bytes += size;
+			}
+			evict();
+		}
+
+		byte[] get(String key) throws IOException
+		{
+			synchronized (this)
+			{
+				if (sizes.get(key) == null)
+				{
+					return null;
+				}
+			}
+
+			final Path file = directory.resolve(key + SUFFIX);
+			try
+			{
+				final byte[] value = Files.readAllBytes(file);
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+				return value;
+			}
+			catch (NoSuchFileException exc)
+			{
+				synchronized (this)
+				{
+					final Long size = sizes.remove(key);
+					if (size != null)
+					{
+						bytes -= size;
+					}
+				}
+				return null;
+			}
+		}
+
+		void put(String key, byte[] value) throws IOException
+		{
+			if (value.length > maxBytes)
+			{
+				return;
+			}
+
+			// Written aside and moved in, so that readers never see a partial file
+			final Path temp = Files.createTempFile(directory, key, ".tmp");
+			try
+			{
+				Files.write(temp, value);
+				Files.move(temp, directory.resolve(key + SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			finally
+			{
+				Files.deleteIfExists(temp);
+			}
+
+			synchronized (this)
+			{
+				final Long previous = sizes.put(key, (long) value.length);
+				bytes += value.length - (previous != null ? previous : 0);
+				evict();
+			}
+		}
+
+		private void evict() throws IOException
+		{
+			final Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+			while (bytes > maxBytes)
+			{
+				final Map.Entry<String, Long> entry = eldest.next();
+				Files.deleteIfExists(directory.resolve(entry.getKey() + SUFFIX));
+				bytes -= entry.getValue();
+				eldest.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Command line entry point.
+ * <pre>
+ * batch [options] &lt;schema file or directory&gt; &lt;output directory or zip file&gt;
+ *   --namespace &lt;pattern&gt;   Target namespace, required. {name} and {path} are replaced
+ *                           with the file name and relative path of the schema
+ *   --name &lt;pattern&gt;        Name of the XSD type, {name} by default
+ *   --glob &lt;glob&gt;           Schemas to convert in a directory, **.json by default
+ *   --definitions &lt;file&gt;    Shared definitions, converting as done by Jsons2XsdSingleFile
+ *   --wrapping &lt;wrapping&gt;   ELEMENT (default) or TYPE
+ *   --threads &lt;count&gt;       Number of threads, the number of processors by default
+ *   --types &lt;file&gt;          Extra type mappings, in the properties format of {@link TypeMapper#with(java.util.Properties)}
+ *   --shared-types &lt;bool&gt;   Write anonymous types used more than once as a single named type, false by default
+ *   --profile &lt;profile&gt;     Layout of the XSDs, PRETTY (default), COMPACT or CANONICAL, see {@link OutputProfile}
+ *   --compress &lt;format&gt;     none (default), gzip for .xsd.gz files, or zip to write all XSDs into a single zip file
+ *
+ * serve [options]
+ *   --host &lt;host&gt;           Address to listen on, localhost by default
+ *   --port &lt;port&gt;           Port to listen on, 8080 by default
+ *   --threads &lt;count&gt;       Number of conversions run at once, the number of processors by default
+ *   --queue &lt;count&gt;         Number of requests waiting before answering 503, 64 by default
+ *   --definitions, --types, --shared-types and --profile as for batch
+ *   Sets sun.net.httpserver.nodelay to true unless given, see {@link Jsons2XsdServer}
+ *
+ * watch [options] &lt;schema directory&gt; &lt;output directory&gt;
+ *   --quiet &lt;millis&gt;        Time without changes before converting, 200 by default
+ *   --namespace, --name, --glob, --definitions, --wrapping, --types, --shared-types and --profile as for batch
+ * </pre>
+ * The exit code is 0 when every schema was converted, 1 when some failed and 2 on invalid arguments.
+ * The server, see {@link Jsons2XsdServer}, and the watch, see {@link Jsons2XsdWatch}, run until
+ * the process is stopped.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdCli
+{
+	private static final List<String> batchOptions = Arrays.asList("namespace", "name", "glob", "definitions", "wrapping", "threads", "types", "shared-types", "profile", "compress");
+
+	private static final List<String> serveOptions = Arrays.asList("host", "port", "threads", "queue", "definitions", "types", "shared-types", "profile");
+
+	private static final List<String> watchOptions = Arrays.asList("namespace", "name", "glob", "definitions", "wrapping", "quiet", "types", "shared-types", "profile");
+
+	private static final String USAGE = "Usage: batch --namespace <pattern> [--name <pattern>] [--glob <glob>] [--definitions <file>] [--wrapping ELEMENT|TYPE] [--threads <count>] [--types <file>] [--shared-types true|false] [--profile PRETTY|COMPACT|CANONICAL] [--compress none|gzip|zip] <schema file or directory> <output directory or zip file>\n"
+		+ "       serve [--host <host>] [--port <port>] [--threads <count>] [--queue <count>] [--definitions <file>] [--types <file>] [--shared-types true|false] [--profile PRETTY|COMPACT|CANONICAL]\n"
+		+ "       watch --namespace <pattern> [--name <pattern>] [--glob <glob>] [--definitions <file>] [--wrapping ELEMENT|TYPE] [--quiet <millis>] [--types <file>] [--shared-types true|false] [--profile PRETTY|COMPACT|CANONICAL] <schema directory> <output directory>";
+
+	private Jsons2XsdCli()
+	{
+	}
+
+	public static void main(String[] args)
+	{
+		System.exit(run(args, System.out, System.err));
+	}
+
+	static int run(String[] args, PrintStream out, PrintStream err)
+	{
+		final Map<String, String> options = new HashMap<>();
+		final List<String> arguments = new ArrayList<>();
+		final boolean batch = parse(args, options, arguments) && arguments.size() == 3 && arguments.get(0).equals("batch") && options.containsKey("namespace") && batchOptions.containsAll(options.keySet());
+		final boolean serve = ! batch && arguments.size() == 1 && arguments.get(0).equals("serve") && serveOptions.containsAll(options.keySet());
+		final boolean watch = ! batch && arguments.size() == 3 && arguments.get(0).equals("watch") && options.containsKey("namespace") && watchOptions.containsAll(options.keySet());
+		if (! batch && ! serve && ! watch)
+		{
+			err.println(USAGE);
+			return 2;
+		}
+
+		try
+		{
+			if (serve)
+			{
+				return serve(options, out);
+			}
+			if (watch)
+			{
+				return watch(Paths.get(arguments.get(1)), Paths.get(arguments.get(2)), options, out, err);
+			}
+			return batch(Paths.get(arguments.get(1)), Paths.get(arguments.get(2)), options, out, err);
+		}
+		catch (IllegalArgumentException exc)
+		{
+			err.println(exc.getMessage());
+			err.println(USAGE);
+			return 2;
+		}
+		catch (IOException exc)
+		{
+			err.println(exc.getMessage());
+			return 1;
+		}
+	}
+
+	private static int batch(Path input, Path output, Map<String, String> options, PrintStream out, PrintStream err) throws IOException
+	{
+		final Jsons2XsdBatch.Naming naming = Jsons2XsdBatch.naming(options.get("namespace"), option(options, "name", "{name}"));
+		final String wrapping = option(options, "wrapping", "ELEMENT");
+		final int threads = Integer.parseInt(option(options, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+		Assert.isTrue(threads > 0, "threads must be positive");
+		final String compress = option(options, "compress", "none");
+		Assert.isTrue(Arrays.asList("none", "gzip", "zip").contains(compress), "compress must be none, gzip or zip");
+
+		final Path directory;
+		final List<Path> schemas;
+		if (Files.isDirectory(input))
+		{
+			directory = input;
+			schemas = Jsons2XsdBatch.findSchemas(input, option(options, "glob", "**.json"));
+		}
+		else
+		{
+			directory = input.toAbsolutePath().getParent();
+			schemas = Collections.singletonList(input.getFileName());
+		}
+
+		final Jsons2XsdConverter converter = converter(options);
+		final DefinitionsRegistry definitions = definitions(converter, options);
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		final Jsons2XsdBatch.Result result;
+		try (final Jsons2XsdBatch.Output xsds = compress.equals("zip") ? Jsons2XsdBatch.zip(output) : compress.equals("gzip") ? Jsons2XsdBatch.gzip(output) : Jsons2XsdBatch.directory(output))
+		{
+			final Jsons2XsdBatch batch = new Jsons2XsdBatch(converter, pool);
+			if (definitions != null)
+			{
+				result = batch.convert(directory, schemas, xsds, naming, definitions, Jsons2XsdSingleFile.OuterWrapping.valueOf(wrapping));
+			}
+			else
+			{
+				result = batch.convert(directory, schemas, xsds, naming, Jsons2Xsd.OuterWrapping.valueOf(wrapping));
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		for (Entry<Path, ConversionDiagnostics> diagnostics : result.getDiagnostics().entrySet())
+		{
+			for (ConversionDiagnostics.Diagnostic diagnostic : diagnostics.getValue().getDiagnostics())
+			{
+				err.println("Warning " + diagnostics.getKey() + diagnostic);
+			}
+		}
+		for (Entry<Path, Exception> failure : result.getFailures().entrySet())
+		{
+			err.println("Failed " + failure.getKey() + ": " + failure.getValue());
+		}
+		out.println(result);
+		return result.getFailures().isEmpty() ? 0 : 1;
+	}
+
+	private static int serve(Map<String, String> options, PrintStream out) throws IOException
+	{
+		// The process only serves, so the responses need not wait for delayed ACKs, see Jsons2XsdServer
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+		{
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		final int threads = Integer.parseInt(option(options, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+		final int queue = Integer.parseInt(option(options, "queue", "64"));
+		final InetSocketAddress address = new InetSocketAddress(option(options, "host", "localhost"), Integer.parseInt(option(options, "port", "8080")));
+		final Jsons2XsdConverter converter = converter(options);
+		final Jsons2XsdServer server = new Jsons2XsdServer(converter, address, threads, queue, definitions(converter, options));
+
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					server.stop();
+				}
+				catch (InterruptedException exc)
+				{
+					Thread.currentThread().interrupt();
+				}
+				stopped.countDown();
+			}
+		});
+		server.start();
+		out.println("Listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+		try
+		{
+			stopped.await();
+		}
+		catch (InterruptedException exc)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return 0;
+	}
+
+	private static int watch(Path directory, Path outputDirectory, Map<String, String> options, final PrintStream out, final PrintStream err) throws IOException
+	{
+		Assert.isTrue(Files.isDirectory(directory), directory + " is not a directory");
+		final Jsons2XsdBatch.Naming naming = Jsons2XsdBatch.naming(options.get("namespace"), option(options, "name", "{name}"));
+		final String wrapping = option(options, "wrapping", "ELEMENT");
+		final long quiet = Long.parseLong(option(options, "quiet", "200"));
+		final String glob = option(options, "glob", "**.json");
+		final Jsons2XsdConverter converter = converter(options);
+
+		final Jsons2XsdWatch watch;
+		if (options.containsKey("definitions"))
+		{
+			watch = new Jsons2XsdWatch(converter, directory, glob, outputDirectory, naming, Paths.get(options.get("definitions")), Jsons2XsdSingleFile.OuterWrapping.valueOf(wrapping));
+		}
+		else
+		{
+			watch = new Jsons2XsdWatch(converter, directory, glob, outputDirectory, naming, Jsons2Xsd.OuterWrapping.valueOf(wrapping));
+		}
+
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					watch.close();
+					stopped.await();
+				}
+				catch (IOException exc)
+				{
+					// Stopping anyway
+				}
+				catch (InterruptedException exc)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		out.println("Watching " + directory);
+		try
+		{
+			watch.watch(quiet, TimeUnit.MILLISECONDS, new Jsons2XsdWatch.Listener()
+			{
+				@Override
+				public void updated(Jsons2XsdWatch.Update update)
+				{
+					for (Entry<Path, ConversionDiagnostics> diagnostics : update.getDiagnostics().entrySet())
+					{
+						for (ConversionDiagnostics.Diagnostic diagnostic : diagnostics.getValue().getDiagnostics())
+						{
+							err.println("Warning " + diagnostics.getKey() + diagnostic);
+						}
+					}
+					for (Entry<Path, Exception> failure : update.getFailures().entrySet())
+					{
+						err.println("Failed " + failure.getKey() + ": " + failure.getValue());
+					}
+					out.println(update);
+				}
+			});
+		}
+		catch (InterruptedException exc)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			stopped.countDown();
+		}
+		return 0;
+	}
+
+	private static Jsons2XsdConverter converter(Map<String, String> options) throws IOException
+	{
+		return new Jsons2XsdConverter(new ObjectMapper(), typeMapper(options))
+			.withSharedTypes(Boolean.parseBoolean(option(options, "shared-types", "false")))
+			.withOutputProfile(OutputProfile.valueOf(option(options, "profile", "PRETTY")));
+	}
+
+	/**
+	 * @return The definitions given, or null to convert as done by Jsons2Xsd
+	 */
+	private static DefinitionsRegistry definitions(Jsons2XsdConverter converter, Map<String, String> options) throws IOException
+	{
+		if (! options.containsKey("definitions"))
+		{
+			return null;
+		}
+		try (final Reader reader = Files.newBufferedReader(Paths.get(options.get("definitions")), StandardCharsets.UTF_8))
+		{
+			return converter.loadDefinitions(reader);
+		}
+	}
+
+	private static TypeMapper typeMapper(Map<String, String> options) throws IOException
+	{
+		if (! options.containsKey("types"))
+		{
+			return TypeMapper.DEFAULT;
+		}
+		final Properties types = new Properties();
+		try (final Reader reader = Files.newBufferedReader(Paths.get(options.get("types")), StandardCharsets.UTF_8))
+		{
+			types.load(reader);
+		}
+		return TypeMapper.DEFAULT.with(types);
+	}
+
+	/**
+	 * Split the arguments into <code>--option value</code> pairs and the rest
+	 */
+	private static boolean parse(String[] args, Map<String, String> options, List<String> arguments)
+	{
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].startsWith("--"))
+			{
+				if (i + 1 == args.length)
+				{
+					return false;
+				}
+				options.put(args[i].substring(2), args[++i]);
+			}
+			else
+			{
+				arguments.add(args[i]);
+			}
+		}
+		return true;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue)
+	{
+		final String value = options.get(name);
+		return value != null ? value : defaultValue;
+	}
+}
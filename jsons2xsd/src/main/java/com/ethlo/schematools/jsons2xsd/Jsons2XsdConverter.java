@@ -0,0 +1,783 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+
+import org.w3c.dom.Document;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reusable, immutable converter from JSON schema to XSD.
+ * <p>
+ * An instance holds only configuration; all state of a conversion lives in a
+ * {@link ConversionContext} created per call. A single instance can therefore be
+ * shared and used by any number of threads concurrently.
+ * <p>
+ * Every conversion is available in two forms: one returning a DOM {@link Document},
+ * and one streaming the indented XSD to a {@link Writer} or {@link OutputStream}
+ * as the JSON schema is walked, without building the document in memory. The
+ * streams are flushed, but not closed.
+ * <p>
+ * Schemas too large to hold as a tree can be converted from a {@link Path}, which is
+ * read token by token instead.
+ * <p>
+ * Schemas held as bytes, in an {@link InputStream}, <code>byte[]</code>, {@link ByteBuffer} or
+ * file, are read by the byte based parser of Jackson, which detects the encoding itself, without
+ * decoding them to characters first. Arrays and buffers backed by one are parsed in place; large
+ * files are mapped into memory.
+ * <p>
+ * A {@link ConversionListener} passed to the constructor is told the timings and counts
+ * of every successful conversion. Without one nothing is measured.
+ * <p>
+ * With {@link #withSharedTypes(boolean)}, anonymous types of the same shape are written
+ * once as a named type. The whole XSD is then held in memory before it is written.
+ * <p>
+ * With {@link #withDefinitionsPool(ForkJoinPool)}, the definitions of a schema are rendered
+ * concurrently, and written in the same order and form as without.
+ * <p>
+ * The XSD written to a stream is indented, unless another {@link OutputProfile} is chosen with
+ * {@link #withOutputProfile(OutputProfile)}. Documents are laid out when written, see
+ * {@link XmlUtil#write(org.w3c.dom.Node, Writer, OutputProfile)}.
+ * 
+ * @author mha
+ */
+public final class Jsons2XsdConverter
+{
+	/**
+	 * Files from this size are mapped rather than read, see {@link #readTree(ConversionContext, Path)}
+	 */
+	private static final long MAP_THRESHOLD = 1 << 20;
+	
+	private final ObjectMapper mapper;
+	private final JsonFactory streamingFactory;
+	private final TypeMapper typeMapper;
+	private final ConversionListener listener;
+	private final boolean sharedTypes;
+	private final ForkJoinPool definitionsPool;
+	private final OutputProfile outputProfile;
+	
+	public Jsons2XsdConverter()
+	{
+		this(new ObjectMapper());
+	}
+	
+	/**
+	 * @param mapper The mapper used to read the JSON schemas. It must not be reconfigured after being passed in.
+	 */
+	public Jsons2XsdConverter(ObjectMapper mapper)
+	{
+		this(mapper, TypeMapper.DEFAULT);
+	}
+	
+	/**
+	 * @param mapper The mapper used to read the JSON schemas. It must not be reconfigured after being passed in.
+	 * @param typeMapper The mapping of JSON schema types and formats to XSD types
+	 */
+	public Jsons2XsdConverter(ObjectMapper mapper, TypeMapper typeMapper)
+	{
+		this(mapper, typeMapper, null);
+	}
+	
+	/**
+	 * @param listener Told about every conversion, possibly from many threads at once. May be null.
+	 */
+	public Jsons2XsdConverter(ObjectMapper mapper, TypeMapper typeMapper, ConversionListener listener)
+	{
+		Assert.notNull(mapper, "mapper cannot be null");
+		Assert.notNull(typeMapper, "typeMapper cannot be null");
+		this.mapper = mapper;
+		this.streamingFactory = mapper.getFactory().copy().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+		this.typeMapper = typeMapper;
+		this.listener = listener;
+		this.sharedTypes = false;
+		this.definitionsPool = null;
+		this.outputProfile = OutputProfile.PRETTY;
+	}
+	
+	private Jsons2XsdConverter(Jsons2XsdConverter converter, boolean sharedTypes, ForkJoinPool definitionsPool, OutputProfile outputProfile)
+	{
+		this.mapper = converter.mapper;
+		this.streamingFactory = converter.streamingFactory;
+		this.typeMapper = converter.typeMapper;
+		this.listener = converter.listener;
+		this.sharedTypes = sharedTypes;
+		this.definitionsPool = definitionsPool;
+		this.outputProfile = outputProfile;
+	}
+	
+	/**
+	 * @param sharedTypes Whether to write every anonymous type used more than once as a single named type, referenced by all its usages
+	 * @return A converter otherwise configured as this one
+	 */
+	public Jsons2XsdConverter withSharedTypes(boolean sharedTypes)
+	{
+		return sharedTypes == this.sharedTypes ? this : new Jsons2XsdConverter(this, sharedTypes, definitionsPool, outputProfile);
+	}
+	
+	public boolean isSharedTypes()
+	{
+		return sharedTypes;
+	}
+	
+	/**
+	 * Render the definitions of a schema, each a <code>complexType</code> of its own, on the threads of <code>pool</code>.
+	 * Worth it for schemas with many or large definitions; the output is the same as without.
+	 * The streaming conversion of {@link #convert(Path, Writer, String, Jsons2Xsd.OuterWrapping, String)} writes as it reads, so always renders them in turn.
+	 * 
+	 * @param definitionsPool The pool, or null to render the definitions in turn on the calling thread
+	 * @return A converter otherwise configured as this one
+	 */
+	public Jsons2XsdConverter withDefinitionsPool(ForkJoinPool definitionsPool)
+	{
+		return definitionsPool == this.definitionsPool ? this : new Jsons2XsdConverter(this, sharedTypes, definitionsPool, outputProfile);
+	}
+	
+	public ForkJoinPool getDefinitionsPool()
+	{
+		return definitionsPool;
+	}
+	
+	/**
+	 * @param outputProfile How the XSD written to a stream is laid out
+	 * @return A converter otherwise configured as this one
+	 */
+	public Jsons2XsdConverter withOutputProfile(OutputProfile outputProfile)
+	{
+		Assert.notNull(outputProfile, "outputProfile cannot be null");
+		return outputProfile == this.outputProfile ? this : new Jsons2XsdConverter(this, sharedTypes, definitionsPool, outputProfile);
+	}
+	
+	public OutputProfile getOutputProfile()
+	{
+		return outputProfile;
+	}
+	
+	public TypeMapper getTypeMapper()
+	{
+		return typeMapper;
+	}
+	
+	/**
+	 * Convert a JSON schema, with its definitions inline, as done by {@link Jsons2Xsd}
+	 */
+	public Document convert(Reader jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public Document convert(Reader jsonSchema, final String targetNameSpaceUri, final Jsons2Xsd.OuterWrapping wrapping, final String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(InputStream jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public Document convert(InputStream jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(byte[] jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public Document convert(byte[] jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * @param jsonSchema Read from its position to its limit, which are left as they are
+	 */
+	public Document convert(ByteBuffer jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public Document convert(ByteBuffer jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * Convert a JSON schema file read into a tree, unlike the streaming conversion of {@link #convert(Path, Writer, String, Jsons2Xsd.OuterWrapping, String)}
+	 */
+	public Document convert(Path jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public Document convert(Path jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	private Document convert(ConversionContext ctx, final JsonNode rootNode, final String targetNameSpaceUri, final Jsons2Xsd.OuterWrapping wrapping, final String name) throws IOException
+	{
+		return render(ctx, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2Xsd.convert(ctx, out, rootNode, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, Writer xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		convert(jsonSchema, xsd, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public void convert(Reader jsonSchema, Writer xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final ConversionContext ctx = newContext(diagnostics);
+		convert(ctx, readTree(ctx, jsonSchema), xsd, targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * Convert a schema already read into a tree, which is modified
+	 */
+	void convert(ConversionContext ctx, final JsonNode rootNode, Writer xsd, final String targetNameSpaceUri, final Jsons2Xsd.OuterWrapping wrapping, final String name) throws IOException
+	{
+		stream(ctx, xsd, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2Xsd.convert(ctx, out, rootNode, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, OutputStream xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		final Writer writer = newWriter(xsd);
+		convert(jsonSchema, writer, targetNameSpaceUri, wrapping, name);
+		writer.flush();
+	}
+	
+	/**
+	 * Convert a JSON schema file as done by {@link Jsons2Xsd}, without reading it into a tree.
+	 * The file is read twice, and memory use depends on its nesting depth rather than its size.
+	 */
+	public void convert(Path jsonSchema, Writer xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		convert(jsonSchema, xsd, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	/**
+	 * @param diagnostics Receives the element names made up, and other points to check in the XSD. May be null.
+	 */
+	public void convert(final Path jsonSchema, Writer xsd, final String targetNameSpaceUri, final Jsons2Xsd.OuterWrapping wrapping, final String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		Assert.notNull(jsonSchema, "jsonSchema cannot be null");
+		stream(newContext(diagnostics), xsd, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out) throws IOException
+			{
+				Jsons2XsdStreaming.convert(ctx, out, streamingFactory, mapper, jsonSchema, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Path jsonSchema, OutputStream xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		convert(jsonSchema, xsd, targetNameSpaceUri, wrapping, name, null);
+	}
+	
+	public void convert(Path jsonSchema, OutputStream xsd, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name, ConversionDiagnostics diagnostics) throws IOException
+	{
+		final Writer writer = newWriter(xsd);
+		convert(jsonSchema, writer, targetNameSpaceUri, wrapping, name, diagnostics);
+		writer.flush();
+	}
+	
+	/**
+	 * Convert a JSON schema with its definitions in a separate file, as done by {@link Jsons2XsdSingleFile}
+	 */
+	public Document convert(Reader jsonSchema, Reader definitionSchema, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, loadDefinitions(definitionSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * Convert a JSON schema against definitions loaded up front with {@link DefinitionsRegistry}
+	 */
+	public Document convert(Reader jsonSchema, final DefinitionsRegistry definitions, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), definitions, targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(InputStream jsonSchema, InputStream definitionSchema, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, loadDefinitions(definitionSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(InputStream jsonSchema, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), definitions, targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(byte[] jsonSchema, byte[] definitionSchema, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, loadDefinitions(definitionSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(byte[] jsonSchema, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), definitions, targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(ByteBuffer jsonSchema, ByteBuffer definitionSchema, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, loadDefinitions(definitionSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(ByteBuffer jsonSchema, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), definitions, targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * The definitions are parsed up front; to parse only those used, pass {@link DefinitionsRegistry#map(Path)} instead
+	 */
+	public Document convert(Path jsonSchema, Path definitionSchema, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		return convert(jsonSchema, loadDefinitions(definitionSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(Path jsonSchema, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), definitions, targetNameSpaceUri, wrapping, name);
+	}
+	
+	private Document convert(ConversionContext ctx, final JsonNode rootNode, final DefinitionsRegistry definitions, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		return render(ctx, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdSingleFile.convert(ctx, out, rootNode, definitions, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, DefinitionsRegistry definitions, Writer xsd, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = newContext();
+		convert(ctx, readTree(ctx, jsonSchema), definitions, xsd, targetNameSpaceUri, wrapping, name);
+	}
+	
+	/**
+	 * Convert a schema already read into a tree
+	 */
+	void convert(ConversionContext ctx, final JsonNode rootNode, final DefinitionsRegistry definitions, Writer xsd, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		stream(ctx, xsd, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdSingleFile.convert(ctx, out, rootNode, definitions, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, DefinitionsRegistry definitions, OutputStream xsd, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		final Writer writer = newWriter(xsd);
+		convert(jsonSchema, definitions, writer, targetNameSpaceUri, wrapping, name);
+		writer.flush();
+	}
+	
+	/**
+	 * Convert a JSON schema, rendering only the referenced definitions, as done by {@link Jsons2XsdDefinitions}
+	 */
+	public Document convert(Reader jsonSchema, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(InputStream jsonSchema, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(byte[] jsonSchema, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(ByteBuffer jsonSchema, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	public Document convert(Path jsonSchema, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		return convert(ctx, readTree(ctx, jsonSchema), targetNameSpaceUri, wrapping, name);
+	}
+	
+	private Document convert(ConversionContext ctx, final JsonNode rootNode, final String targetNameSpaceUri, final Jsons2XsdDefinitions.OuterWrapping wrapping, final String name) throws IOException
+	{
+		return render(ctx, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdDefinitions.convert(ctx, out, rootNode, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, Writer xsd, final String targetNameSpaceUri, final Jsons2XsdDefinitions.OuterWrapping wrapping, final String name) throws IOException
+	{
+		final ConversionContext ctx = newContext();
+		final JsonNode rootNode = readTree(ctx, jsonSchema);
+		stream(ctx, xsd, new Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdDefinitions.convert(ctx, out, rootNode, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+	
+	public void convert(Reader jsonSchema, OutputStream xsd, String targetNameSpaceUri, Jsons2XsdDefinitions.OuterWrapping wrapping, String name) throws IOException
+	{
+		final Writer writer = newWriter(xsd);
+		convert(jsonSchema, writer, targetNameSpaceUri, wrapping, name);
+		writer.flush();
+	}
+	
+	/**
+	 * Read a JSON schema as the parse phase of the conversion, which then starts rendering
+	 */
+	JsonNode readTree(ConversionContext ctx, Reader jsonSchema) throws IOException
+	{
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		final JsonNode rootNode = readTree(mapper.getFactory().createParser(jsonSchema));
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+		return rootNode;
+	}
+	
+	JsonNode readTree(ConversionContext ctx, InputStream jsonSchema) throws IOException
+	{
+		Assert.notNull(jsonSchema, "jsonSchema cannot be null");
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		final JsonNode rootNode = readTree(mapper.getFactory().createParser(jsonSchema));
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+		return rootNode;
+	}
+	
+	JsonNode readTree(ConversionContext ctx, byte[] jsonSchema) throws IOException
+	{
+		Assert.notNull(jsonSchema, "jsonSchema cannot be null");
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		final JsonNode rootNode = readTree(mapper.getFactory().createParser(jsonSchema));
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+		return rootNode;
+	}
+	
+	JsonNode readTree(ConversionContext ctx, ByteBuffer jsonSchema) throws IOException
+	{
+		Assert.notNull(jsonSchema, "jsonSchema cannot be null");
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		final JsonNode rootNode = readTree(jsonSchema);
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+		return rootNode;
+	}
+	
+	/**
+	 * Files of {@link #MAP_THRESHOLD} bytes or more are mapped, as reading them would copy them twice
+	 */
+	JsonNode readTree(ConversionContext ctx, Path jsonSchema) throws IOException
+	{
+		Assert.notNull(jsonSchema, "jsonSchema cannot be null");
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		final JsonNode rootNode = readTree(jsonSchema);
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+		return rootNode;
+	}
+	
+	private JsonNode readTree(ByteBuffer jsonSchema) throws IOException
+	{
+		if (jsonSchema.hasArray())
+		{
+			return readTree(mapper.getFactory().createParser(jsonSchema.array(), jsonSchema.arrayOffset() + jsonSchema.position(), jsonSchema.remaining()));
+		}
+		return readTree(mapper.getFactory().createParser(new ByteBufferInputStream(jsonSchema.duplicate())));
+	}
+	
+	private JsonNode readTree(Path jsonSchema) throws IOException
+	{
+		final long size = Files.size(jsonSchema);
+		if (size < MAP_THRESHOLD)
+		{
+			return readTree(mapper.getFactory().createParser(Files.readAllBytes(jsonSchema)));
+		}
+		Assert.isTrue(size <= Integer.MAX_VALUE, jsonSchema + " is too large to map, at " + size + " bytes");
+		try (final FileChannel channel = FileChannel.open(jsonSchema, StandardOpenOption.READ))
+		{
+			return readTree(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+	
+	/**
+	 * Read without recursing, see {@link JsonTreeReader}
+	 */
+	private JsonNode readTree(JsonParser parser) throws IOException
+	{
+		return JsonTreeReader.read(mapper, parser);
+	}
+	
+	/**
+	 * Parse a definitions file with the mapper of this converter
+	 */
+	public DefinitionsRegistry loadDefinitions(Reader definitionSchema) throws IOException
+	{
+		return DefinitionsRegistry.of(readTree(mapper.getFactory().createParser(definitionSchema)));
+	}
+	
+	public DefinitionsRegistry loadDefinitions(InputStream definitionSchema) throws IOException
+	{
+		Assert.notNull(definitionSchema, "definitionSchema cannot be null");
+		return DefinitionsRegistry.of(readTree(mapper.getFactory().createParser(definitionSchema)));
+	}
+	
+	public DefinitionsRegistry loadDefinitions(byte[] definitionSchema) throws IOException
+	{
+		Assert.notNull(definitionSchema, "definitionSchema cannot be null");
+		return DefinitionsRegistry.of(readTree(mapper.getFactory().createParser(definitionSchema)));
+	}
+	
+	public DefinitionsRegistry loadDefinitions(ByteBuffer definitionSchema) throws IOException
+	{
+		Assert.notNull(definitionSchema, "definitionSchema cannot be null");
+		return DefinitionsRegistry.of(readTree(definitionSchema));
+	}
+	
+	/**
+	 * Parse a whole definitions file up front, see {@link DefinitionsRegistry#map(Path)} for parsing only the definitions used
+	 */
+	public DefinitionsRegistry loadDefinitions(Path definitionSchema) throws IOException
+	{
+		Assert.notNull(definitionSchema, "definitionSchema cannot be null");
+		return DefinitionsRegistry.of(readTree(definitionSchema));
+	}
+	
+	ConversionContext newContext()
+	{
+		return newContext(null);
+	}
+	
+	ConversionContext newContext(ConversionDiagnostics diagnostics)
+	{
+		return new ConversionContext(typeMapper, diagnostics, listener != null ? new ConversionMetrics() : null, definitionsPool);
+	}
+	
+	/**
+	 * Tell the listener about a successful conversion
+	 */
+	void completed(ConversionContext ctx)
+	{
+		if (ctx.metrics != null)
+		{
+			ctx.metrics.complete();
+			listener.conversionCompleted(ctx.metrics);
+		}
+	}
+	
+	private static DomXsdOutput newDomOutput()
+	{
+		final Document xsdDoc = XmlUtil.newDocument();
+		xsdDoc.setXmlStandalone(true);
+		return new DomXsdOutput(xsdDoc);
+	}
+	
+	static Writer newWriter(OutputStream out)
+	{
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Run <code>conversion</code> building a document
+	 */
+	Document render(ConversionContext ctx, Conversion conversion) throws IOException
+	{
+		final DomXsdOutput out = newDomOutput();
+		run(ctx, out, conversion);
+		completed(ctx);
+		return out.getDocument();
+	}
+	
+	/**
+	 * Run <code>conversion</code> writing to <code>xsd</code>
+	 */
+	void stream(ConversionContext ctx, Writer xsd, Conversion conversion) throws IOException
+	{
+		try
+		{
+			ctx.phase(ConversionMetrics.Phase.RENDER);
+			run(ctx, new StreamXsdOutput(ctx.metrics != null ? new CountingWriter(xsd, ctx.metrics) : xsd, outputProfile), conversion);
+			ctx.phase(ConversionMetrics.Phase.WRITE);
+			xsd.flush();
+			completed(ctx);
+		}
+		catch (StreamXsdOutput.WriteException exc)
+		{
+			throw exc.asIOException();
+		}
+	}
+	
+	private void run(ConversionContext ctx, XsdOutput out, Conversion conversion) throws IOException
+	{
+		if (sharedTypes)
+		{
+			final SharedTypes shared = new SharedTypes();
+			conversion.convert(ctx, shared);
+			shared.writeTo(ctx.count(out));
+		}
+		else
+		{
+			conversion.convert(ctx, ctx.count(out));
+		}
+	}
+	
+	/**
+	 * A single conversion, run against the output chosen by the caller
+	 */
+	static abstract class Conversion
+	{
+		abstract void convert(ConversionContext ctx, XsdOutput out) throws IOException;
+	}
+	
+	/**
+	 * Counts the characters written as UTF-8 bytes
+	 */
+	private static final class CountingWriter extends Writer
+	{
+		private final Writer out;
+		private final ConversionMetrics metrics;
+		
+		CountingWriter(Writer out, ConversionMetrics metrics)
+		{
+			this.out = out;
+			this.metrics = metrics;
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException
+		{
+			long bytes = 0;
+			for (int i = off; i < off + len; i++)
+			{
+				bytes += utf8Length(cbuf[i]);
+			}
+			metrics.outputBytes += bytes;
+			out.write(cbuf, off, len);
+		}
+		
+		@Override
+		public void write(String str, int off, int len) throws IOException
+		{
+			long bytes = 0;
+			for (int i = off; i < off + len; i++)
+			{
+				bytes += utf8Length(str.charAt(i));
+			}
+			metrics.outputBytes += bytes;
+			out.write(str, off, len);
+		}
+		
+		@Override
+		public void write(int c) throws IOException
+		{
+			write(new char[] { (char) c }, 0, 1);
+		}
+		
+		@Override
+		public void flush() throws IOException
+		{
+			out.flush();
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+		
+		/**
+		 * A surrogate pair is 4 bytes, 2 for each half
+		 */
+		private static int utf8Length(char c)
+		{
+			return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+		}
+	}
+}
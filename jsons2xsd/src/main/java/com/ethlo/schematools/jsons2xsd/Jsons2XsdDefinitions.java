@@ -0,0 +1,398 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.Map.Entry;
+
+public class Jsons2XsdDefinitions
+{
+	private final static Jsons2XsdConverter converter = new Jsons2XsdConverter();
+
+	
+	public static enum OuterWrapping
+	{
+		ELEMENT, TYPE;
+	}
+	
+
+
+
+
+
+	public static Document convert(Reader jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws JsonProcessingException, IOException
+	{
+		return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+	}
+
+	public static Document convert(InputStream jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws JsonProcessingException, IOException
+	{
+		return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+	}
+
+	public static Document convert(byte[] jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws JsonProcessingException, IOException
+	{
+		return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+	}
+
+	public static Document convert(ByteBuffer jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws JsonProcessingException, IOException
+	{
+		return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+	}
+
+	public static Document convert(Path jsonSchema, String targetNameSpaceUri, OuterWrapping wrapping, String name) throws JsonProcessingException, IOException
+	{
+		return converter.convert(jsonSchema, targetNameSpaceUri, wrapping, name);
+	}
+
+	static void convert(ConversionContext ctx, XsdOutput out, JsonNode rootNode, String targetNameSpaceUri, OuterWrapping wrapping, String name)
+	{
+		//handle external defs
+		final DefinitionsRegistry definitions = DefinitionsRegistry.of(rootNode);
+
+		final String type = rootNode.path("type").textValue();
+		Assert.isTrue("object".equals(type), "root should have type=\"object\"");
+
+		final JsonNode properties = rootNode.get("properties");
+		Assert.notNull(properties, "\"properties\" property should be found in root of JSON schema\"");
+
+		out.startElement("schema");
+		out.attribute("targetNamespace", targetNameSpaceUri);
+		out.namespace(name.toLowerCase(), targetNameSpaceUri);
+
+		out.attribute("elementFormDefault", "qualified");
+		out.attribute("attributeFormDefault", "qualified");
+
+
+
+		if (wrapping == OuterWrapping.ELEMENT)
+		{
+			out.startElement("element");
+			out.attribute("name", name);
+			out.attribute("type", name.toLowerCase() + ":" + name);
+			out.endElement();
+		}
+
+		out.startElement("complexType");
+	//if (wrapping == OuterWrapping.TYPE)
+		{
+			out.attribute("name", name);
+		}
+		out.startElement("sequence");
+
+		doIterate(ctx, out, properties);
+
+		out.endElement();
+		out.endElement();
+
+
+		//Now add the needed definitions, also those referenced by other definitions only
+		final int[] reachable = ParallelDefinitions.indexes(definitions.getReferenceGraph().reachable(properties));
+		ParallelDefinitions.render(ctx, out, reachable.length, new ParallelDefinitions.Renderer()
+		{
+			@Override
+			void render(ConversionContext ctx, XsdOutput out, int idx)
+			{
+				doIterateDefinition(ctx, out, definitions.getName(reachable[idx]), definitions.get(reachable[idx]));
+			}
+		});
+
+		out.endElement();
+	}
+
+	private static void doIterateDefinition(ConversionContext ctx, XsdOutput out, String key, JsonNode val)
+	{
+		//Create a complex type
+		//get properties
+		//call doiteration with properties
+		out.startElement("complexType");
+		out.attribute("name", key);
+
+		final JsonNode properties = val.get("properties");
+		Assert.notNull(properties, "\"properties\" property should be found in \"" + key +  "\"");
+
+		out.startElement("sequence");
+		doIterate(ctx, out, properties);
+		out.endElement();
+		out.endElement();
+	}
+
+	private static void doIterate(ConversionContext ctx, XsdOutput out, JsonNode node)
+	{
+		final Traversal traversal = new Traversal(ctx, out);
+		doIterate(traversal, node);
+		traversal.run();
+	}
+
+	/**
+	 * Schedules the elements of the properties, rendered once the current step is done
+	 */
+	private static void doIterate(Traversal traversal, JsonNode node)
+	{
+		final Iterator<Entry<String, JsonNode>> fieldIter = node.fields();
+		while(fieldIter.hasNext())
+		{
+			final Entry<String, JsonNode> entry = fieldIter.next();
+			final String key = entry.getKey();
+			final JsonNode val = entry.getValue();
+			traversal.then(new Traversal.Step()
+			{
+				@Override
+				void run(Traversal traversal)
+				{
+					doIterateSingle(traversal, key, val);
+				}
+			});
+		}
+	}
+	
+	private static void doIterateSingle(Traversal traversal, String key, JsonNode val)
+	{
+		final ConversionContext ctx = traversal.ctx;
+		final XsdOutput out = traversal.out;
+		final String xsdType = determineXsdType(ctx, key, val);
+		final boolean required = val.path("required").booleanValue();
+		out.startElement("element");
+		out.attribute("name", key);
+
+		if (! required || ("array".equals(xsdType) && ! val.path("items").path("required").booleanValue()))
+		{
+			// Not required, or an array of items that are not required
+			out.attribute("minOccurs", "0");
+		}
+		
+		// Simple types get their "type" attribute from the handlers, unless they add a restriction
+		switch (xsdType)
+		{
+			case "array":
+				handleArray(traversal, val);
+				break;
+				
+			case "decimal":
+			case "int":
+				handleNumber(out, xsdType, val);
+				break;
+				
+			case "enum":
+				handleEnum(out, val);
+				break;
+				
+			case "object":
+				handleObject(traversal, val);
+				break;
+				
+			case "string":
+				handleString(ctx, out, val);
+				break;
+
+			case "reference":
+				handleReference(ctx, out, val, false);
+				break;
+
+			default:
+				out.attribute("type", xsdType);
+				break;
+		}
+		traversal.then(Traversal.end(1));
+	}
+
+
+	private static void handleReference(ConversionContext ctx, XsdOutput out, JsonNode val, boolean unnamed) {
+		ctx.reference();
+		final JsonNode refs = val.get("$ref");
+		String fixRef = refs.asText().replace("#/definitions/", "cmts:");
+		String name = fixRef.substring(5);
+
+
+		if (unnamed) {
+			out.attribute("name", name);
+		}
+		out.attribute("type", fixRef);
+
+
+	}
+
+	private static void handleString(ConversionContext ctx, XsdOutput out, JsonNode val)
+	{
+		final Integer minimumLength = getIntVal(val, "minLength");
+		final Integer maximumLength = getIntVal(val, "maxLength");
+		final String expression = ctx.types.getPattern(val);
+		
+		if (minimumLength != null || maximumLength != null || expression != null)
+		{
+			out.startElement("simpleType");
+			out.startElement("restriction");
+			out.attribute("base", "string");
+			
+			if (minimumLength != null)
+			{
+				out.startElement("minLength");
+				out.attribute("value", Integer.toString(minimumLength));
+				out.endElement();
+			}
+			
+			if (maximumLength != null)
+			{
+				out.startElement("maxLength");
+				out.attribute("value", Integer.toString(maximumLength));
+				out.endElement();
+			}
+			
+			if (expression != null)
+			{
+				out.startElement("pattern");
+				out.attribute("value", expression);
+				out.endElement();
+			}
+			out.endElement();
+			out.endElement();
+		}
+		else
+		{
+			out.attribute("type", "string");
+		}
+	}
+
+	private static void handleObject(Traversal traversal, JsonNode val)
+	{
+		final XsdOutput out = traversal.out;
+		final JsonNode properties = val.get("properties");
+		if (properties != null) {
+			Assert.notNull(properties, "'object' type must have a 'properties' attribute");
+			out.startElement("complexType");
+			out.startElement("sequence");
+			doIterate(traversal, properties);
+			traversal.then(Traversal.end(2));
+		}
+//		else {
+//			final JsonNode refs = val.get("$ref");
+//			Assert.notNull(refs, "No Properties and no Ref is not acceptable.");
+//			out.attribute("ref", refs.asText().toLowerCase());
+//		}
+	}
+
+	private static void handleEnum(XsdOutput out, JsonNode val)
+	{
+		out.startElement("simpleType");
+		out.startElement("restriction");
+		out.attribute("base", "string");
+		final JsonNode enumNode = val.get("enum");
+		for (int i = 0; i < enumNode.size(); i++)
+		{
+		    final String enumVal = enumNode.path(i).asText();
+		    out.startElement("enumeration");
+		    out.attribute("value", enumVal);
+		    out.endElement();
+		}
+		out.endElement();
+		out.endElement();
+	}
+
+	private static void handleNumber(XsdOutput out, String xsdType, JsonNode jsonNode)
+	{
+		final Integer minimum = getIntVal(jsonNode, "minimum");
+		final Integer maximum = getIntVal(jsonNode, "maximum");
+		
+		if (minimum != null || maximum != null)
+		{
+			out.startElement("simpleType");
+			out.startElement("restriction");
+			out.attribute("base", xsdType);
+			
+			if (minimum != null)
+			{
+				out.startElement("minInclusive");
+				out.attribute("value", Integer.toString(minimum));
+				out.endElement();
+			}
+			
+			if (maximum != null)
+			{
+				out.startElement("maxInclusive");
+				out.attribute("value", Integer.toString(maximum));
+				out.endElement();
+			}
+			out.endElement();
+			out.endElement();
+		}
+		else
+		{
+			out.attribute("type", xsdType);
+		}
+	}
+
+	private static void handleArray(Traversal traversal, JsonNode jsonNode)
+	{
+		final ConversionContext ctx = traversal.ctx;
+		final XsdOutput out = traversal.out;
+		final JsonNode arrItems = jsonNode.path("items");
+//		final String arrayXsdType = getType(arrItems.path("type").textValue(), arrItems.path("format").textValue());
+		final String arrayXsdType = determineXsdType(ctx, arrItems.path("type").textValue(), arrItems);
+		out.startElement("complexType");
+		out.startElement("sequence");
+		out.startElement("element");
+
+		// Minimum items
+		final Integer minItems = getIntVal(jsonNode, "minItems");
+		out.attribute("minOccurs", minItems != null ? Integer.toString(minItems) : "0");
+
+		// Max Items
+		final Integer maxItems = getIntVal(jsonNode, "maxItems");
+		out.attribute("maxOccurs", maxItems != null ? Integer.toString(maxItems) : "unbounded");
+
+		if (arrayXsdType.equals("reference") ) {
+			handleReference(ctx, out, arrItems, true);
+		}
+		else if (arrayXsdType.equals("object")) {
+			handleObject(traversal, arrItems);
+		}
+		else {
+			out.attribute("name", "item");
+			out.attribute("type", arrayXsdType);
+		}
+		// TODO: Set restrictions for the array type, and possibly recurse into the type if "object"
+		
+		traversal.then(Traversal.end(3));
+	}
+
+	private static String determineXsdType(ConversionContext ctx, String key, JsonNode node)
+	{
+		ctx.visit();
+		String jsonType = node.path("type").textValue();
+		final String jsonFormat = node.path("format").textValue();
+		final boolean isEnum = node.get("enum") != null;
+		final boolean isRef = node.get("$ref") != null;
+		if (isRef) {
+			return "reference";
+		}
+		else if (isEnum)
+		{
+			return "enum";
+		}
+		else
+		{
+			if (jsonType == null)
+			{
+				// The message is only built on failure, as it writes out the whole node
+				throw new IllegalArgumentException("type must be specified on node '" + key + "': " + node);
+			}
+			final String xsdType = ctx.types.getXsdType(jsonType, jsonFormat);
+			Assert.notNull(xsdType, "Unable to determine XSD type for json type=" + jsonType + ", format=" + jsonFormat);
+			return xsdType;
+		}
+
+	}
+
+	private static Integer getIntVal(JsonNode node, String attribute)
+	{
+		return node.get(attribute) != null ? node.get(attribute).intValue() : null;
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.w3c.dom.Document;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Converts schemas against a definitions file that is edited between conversions, as done by
+ * {@link Jsons2XsdSingleFile}, re-rendering only the definitions that changed.
+ * <p>
+ * The complexType of every rendered definition is kept, together with the definition it was
+ * rendered from. The next conversion writes the kept complexType as long as the definition is
+ * unchanged, comparing field names, their order and values. A complexType refers to other
+ * definitions by name only, so it does not depend on their content; which definitions are
+ * written does, and is worked out again on every conversion from the references in the
+ * definitions file, so changes anywhere in the chain of references are picked up without
+ * rendering the unchanged definitions along it.
+ * <p>
+ * The output is the same as converting from scratch. An instance is meant for one definitions
+ * file, and is safe to use from several threads, one conversion at a time.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdIncremental
+{
+	private final Jsons2XsdConverter converter;
+	private final Map<String, RenderedDefinition> rendered = new HashMap<>();
+	private int renderedCount;
+	private int reusedCount;
+
+	public Jsons2XsdIncremental()
+	{
+		this(new Jsons2XsdConverter());
+	}
+
+	public Jsons2XsdIncremental(Jsons2XsdConverter converter)
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		this.converter = converter;
+	}
+
+	public synchronized Document convert(Reader jsonSchema, final DefinitionsRegistry definitions, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = converter.newContext();
+		final JsonNode rootNode = converter.readTree(ctx, jsonSchema);
+		return converter.render(ctx, new Jsons2XsdConverter.Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdIncremental.this.convert(ctx, out, rootNode, definitions, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+
+	public synchronized void convert(Reader jsonSchema, DefinitionsRegistry definitions, Writer xsd, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		final ConversionContext ctx = converter.newContext();
+		convert(ctx, converter.readTree(ctx, jsonSchema), definitions, xsd, targetNameSpaceUri, wrapping, name);
+	}
+
+	synchronized void convert(ConversionContext ctx, final JsonNode rootNode, final DefinitionsRegistry definitions, Writer xsd, final String targetNameSpaceUri, final Jsons2XsdSingleFile.OuterWrapping wrapping, final String name) throws IOException
+	{
+		converter.stream(ctx, xsd, new Jsons2XsdConverter.Conversion()
+		{
+			@Override
+			void convert(ConversionContext ctx, XsdOutput out)
+			{
+				Jsons2XsdIncremental.this.convert(ctx, out, rootNode, definitions, targetNameSpaceUri, wrapping, name);
+			}
+		});
+	}
+
+	public synchronized void convert(Reader jsonSchema, DefinitionsRegistry definitions, OutputStream xsd, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name) throws IOException
+	{
+		final Writer writer = Jsons2XsdConverter.newWriter(xsd);
+		convert(jsonSchema, definitions, writer, targetNameSpaceUri, wrapping, name);
+		writer.flush();
+	}
+
+	/**
+	 * @return The number of definitions rendered by the last conversion
+	 */
+	public synchronized int getRenderedCount()
+	{
+		return renderedCount;
+	}
+
+	/**
+	 * @return The number of definitions written from a previous conversion by the last conversion
+	 */
+	public synchronized int getReusedCount()
+	{
+		return reusedCount;
+	}
+
+	/**
+	 * Forget all rendered definitions
+	 */
+	public synchronized void clear()
+	{
+		rendered.clear();
+	}
+
+	private void convert(ConversionContext ctx, XsdOutput out, JsonNode rootNode, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name)
+	{
+		renderedCount = 0;
+		reusedCount = 0;
+		Jsons2XsdSingleFile.convert(ctx, out, rootNode, definitions, targetNameSpaceUri, wrapping, name, new Jsons2XsdSingleFile.DefinitionWriter()
+		{
+			@Override
+			void write(ConversionContext ctx, XsdOutput out, String key, JsonNode val)
+			{
+				RenderedDefinition definition = rendered.get(key);
+				if (definition != null && sameTree(definition.source, val))
+				{
+					reusedCount++;
+				}
+				else
+				{
+					definition = render(key, val);
+					rendered.put(key, definition);
+					renderedCount++;
+				}
+
+				definition.xsd.writeTo(out);
+			}
+		});
+
+		// Definitions removed from the file
+		final Iterator<String> names = rendered.keySet().iterator();
+		while (names.hasNext())
+		{
+			if (definitions.indexOf(names.next()) < 0)
+			{
+				names.remove();
+			}
+		}
+	}
+
+	private RenderedDefinition render(String key, JsonNode val)
+	{
+		// Not measured, only the conversion reusing the definition is
+		final ConversionContext ctx = new ConversionContext(converter.getTypeMapper());
+		final XsdFragment xsd = new XsdFragment();
+		Jsons2XsdSingleFile.renderDefinition(ctx, xsd, key, val);
+		return new RenderedDefinition(val, xsd);
+	}
+
+	/**
+	 * Like {@link JsonNode#equals(Object)}, but also comparing the order of the fields, as it decides the order of the elements.
+	 * The pairs of nodes still to compare are kept in a stack, so the depth of the trees is not limited by the stack of the thread.
+	 */
+	static boolean sameTree(JsonNode a, JsonNode b)
+	{
+		final Deque<JsonNode> pending = new ArrayDeque<>();
+		pending.push(b);
+		pending.push(a);
+		while (! pending.isEmpty())
+		{
+			final JsonNode left = pending.pop();
+			final JsonNode right = pending.pop();
+			if (left == right)
+			{
+				continue;
+			}
+			if (left.isObject() && right.isObject())
+			{
+				if (left.size() != right.size())
+				{
+					return false;
+				}
+				final Iterator<Entry<String, JsonNode>> fieldsA = left.fields();
+				final Iterator<Entry<String, JsonNode>> fieldsB = right.fields();
+				while (fieldsA.hasNext())
+				{
+					final Entry<String, JsonNode> fieldA = fieldsA.next();
+					final Entry<String, JsonNode> fieldB = fieldsB.next();
+					if (! fieldA.getKey().equals(fieldB.getKey()))
+					{
+						return false;
+					}
+					pending.push(fieldB.getValue());
+					pending.push(fieldA.getValue());
+				}
+			}
+			else if (left.isArray() && right.isArray())
+			{
+				if (left.size() != right.size())
+				{
+					return false;
+				}
+				for (int i = 0; i < left.size(); i++)
+				{
+					pending.push(right.get(i));
+					pending.push(left.get(i));
+				}
+			}
+			else if (left.isContainerNode() || right.isContainerNode() || ! left.equals(right))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class RenderedDefinition
+	{
+		private final JsonNode source;
+		private final XsdFragment xsd;
+
+		private RenderedDefinition(JsonNode source, XsdFragment xsd)
+		{
+			this.source = source;
+			this.xsd = xsd;
+		}
+	}
+}
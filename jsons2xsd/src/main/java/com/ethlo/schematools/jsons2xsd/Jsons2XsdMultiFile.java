@@ -0,0 +1,329 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Converts a schema against shared definitions, as done by {@link Jsons2XsdSingleFile}, into
+ * several XSD files: one for the schema, and one per group of definitions, so consumers can load
+ * only the groups they need.
+ * <p>
+ * Only the definitions reachable from the schema are written, each in the file of its group,
+ * named after the group. Every file includes the files of the groups it refers to with
+ * <code>xs:include</code>, which makes the references between them work both ways. All files
+ * share the target namespace of the schema, as the references to definitions are written with
+ * its prefix, so <code>xs:import</code> does not apply.
+ * <p>
+ * The files are rendered and written by the threads of a {@link ForkJoinPool}. Anonymous types
+ * are never shared, see {@link Jsons2XsdConverter#withSharedTypes(boolean)}, as the names given to
+ * shared types are only unique within a file.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdMultiFile
+{
+	private static final String SUFFIX = ".xsd";
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Decides the file of each definition
+	 */
+	public interface Grouping
+	{
+		/**
+		 * @return The name of the group, the file name without <code>.xsd</code>, without path separators or <code>..</code>
+		 */
+		String getGroup(String name, JsonNode definition);
+	}
+
+	private final Jsons2XsdConverter converter;
+	private final ForkJoinPool pool;
+
+	public Jsons2XsdMultiFile(Jsons2XsdConverter converter, ForkJoinPool pool)
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.notNull(pool, "pool cannot be null");
+		this.converter = converter.withSharedTypes(false);
+		this.pool = pool;
+	}
+
+	/**
+	 * A file per definition, named after it
+	 */
+	public static Grouping perDefinition()
+	{
+		return new Grouping()
+		{
+			@Override
+			public String getGroup(String name, JsonNode definition)
+			{
+				return name;
+			}
+		};
+	}
+
+	/**
+	 * A file per value of a string field of the definitions, like <code>"x-xsd-group": "billing"</code>
+	 *
+	 * @param defaultGroup The group of the definitions without the field
+	 */
+	public static Grouping byField(final String field, final String defaultGroup)
+	{
+		Assert.notNull(field, "field cannot be null");
+		Assert.notNull(defaultGroup, "defaultGroup cannot be null");
+		return new Grouping()
+		{
+			@Override
+			public String getGroup(String name, JsonNode definition)
+			{
+				final JsonNode group = definition.get(field);
+				return group != null && group.isTextual() ? group.textValue() : defaultGroup;
+			}
+		};
+	}
+
+	/**
+	 * @param outputDirectory Where the files are written, the schema as <code>&lt;name&gt;.xsd</code>
+	 * @return The files written, the schema first and then the groups in the order of their first definition in the definitions file
+	 */
+	public List<Path> convert(Reader jsonSchema, DefinitionsRegistry definitions, Path outputDirectory, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name, Grouping grouping) throws IOException
+	{
+		Assert.notNull(definitions, "definitions cannot be null");
+		Assert.notNull(outputDirectory, "outputDirectory cannot be null");
+		Assert.notNull(grouping, "grouping cannot be null");
+		Assert.notNull(name, "name cannot be null");
+		final JsonNode properties = Jsons2XsdSingleFile.rootProperties(converter.readTree(converter.newContext(), jsonSchema));
+		final ReferenceGraph graph = definitions.getReferenceGraph();
+
+		// The reachable definitions by group
+		final Map<String, List<Integer>> groups = new LinkedHashMap<>();
+		final String[] groupOf = new String[definitions.size()];
+		final BitSet reachable = graph.reachable(properties);
+		for (int idx = reachable.nextSetBit(0); idx >= 0; idx = reachable.nextSetBit(idx + 1))
+		{
+			final String group = grouping.getGroup(definitions.getName(idx), definitions.get(idx));
+			Assert.isTrue(group != null && ! group.isEmpty(), "no group for definition " + definitions.getName(idx));
+			Assert.isTrue(! group.equals(name), "group " + group + " has the same file name as the schema");
+			List<Integer> members = groups.get(group);
+			if (members == null)
+			{
+				members = new ArrayList<>();
+				groups.put(group, members);
+			}
+			members.add(idx);
+			groupOf[idx] = group;
+		}
+
+		final List<SchemaFile> files = new ArrayList<>(groups.size() + 1);
+		files.add(new SchemaFile(file(outputDirectory, name), includes(groupOf, graph.referencesOf(properties), null), Collections.<Integer> emptyList()));
+		for (Map.Entry<String, List<Integer>> group : groups.entrySet())
+		{
+			final Set<String> includes = new LinkedHashSet<>();
+			for (int idx : group.getValue())
+			{
+				includes.addAll(includes(groupOf, graph.referencesOf(idx), group.getKey()));
+			}
+			files.add(new SchemaFile(file(outputDirectory, group.getKey()), includes, group.getValue()));
+		}
+
+		Files.createDirectories(outputDirectory);
+		final Job job = new Job(files, properties, definitions, targetNameSpaceUri, wrapping, name);
+		pool.invoke(new WriteTask(job, 0, files.size()));
+		for (Exception failure : job.failures)
+		{
+			if (failure instanceof IOException)
+			{
+				throw (IOException) failure;
+			}
+			if (failure != null)
+			{
+				throw (RuntimeException) failure;
+			}
+		}
+
+		final List<Path> written = new ArrayList<>(files.size());
+		for (SchemaFile file : files)
+		{
+			written.add(file.path);
+		}
+		return written;
+	}
+
+	/**
+	 * @return The file of <code>group</code>, directly in <code>directory</code>
+	 */
+	private static Path file(Path directory, String group)
+	{
+		Assert.isTrue(group.indexOf('/') < 0 && group.indexOf('\\') < 0 && ! group.contains(".."), group + " is not a file name");
+		final Path file = directory.resolve(group + SUFFIX);
+		Assert.isTrue(directory.equals(file.getParent()), group + " is not a file name");
+		return file;
+	}
+
+	/**
+	 * @return <code>fileName</code> as a relative URI, every byte but the unreserved ones percent-encoded as UTF-8
+	 */
+	static String uriPath(String fileName)
+	{
+		final StringBuilder uri = new StringBuilder(fileName.length());
+		for (byte b : fileName.getBytes(StandardCharsets.UTF_8))
+		{
+			final int c = b & 0xFF;
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~')
+			{
+				uri.append((char) c);
+			}
+			else
+			{
+				uri.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			}
+		}
+		return uri.toString();
+	}
+
+	/**
+	 * @return The groups of <code>references</code>, without <code>self</code>
+	 */
+	private static Set<String> includes(String[] groupOf, int[] references, String self)
+	{
+		final Set<String> includes = new LinkedHashSet<>();
+		for (int idx : references)
+		{
+			if (! groupOf[idx].equals(self))
+			{
+				includes.add(groupOf[idx]);
+			}
+		}
+		return includes;
+	}
+
+	private void write(final Job job, final SchemaFile file) throws IOException
+	{
+		try (final Writer xsd = Jsons2XsdConverter.newWriter(new BufferedOutputStream(Files.newOutputStream(file.path))))
+		{
+			converter.stream(converter.newContext(), xsd, new Jsons2XsdConverter.Conversion()
+			{
+				@Override
+				void convert(ConversionContext ctx, XsdOutput out)
+				{
+					Jsons2XsdSingleFile.startSchema(out, job.targetNameSpaceUri, job.name);
+					for (String include : file.includes)
+					{
+						out.startElement("include");
+						out.attribute("schemaLocation", uriPath(include + SUFFIX));
+						out.endElement();
+					}
+					if (file.definitions.isEmpty())
+					{
+						Jsons2XsdSingleFile.renderRoot(ctx, out, job.properties, job.wrapping, job.name);
+					}
+					for (int idx : file.definitions)
+					{
+						Jsons2XsdSingleFile.renderDefinition(ctx, out, job.definitions.getName(idx), job.definitions.get(idx));
+					}
+					out.endElement();
+				}
+			});
+		}
+	}
+
+	/**
+	 * One file to write, the schema when without definitions
+	 */
+	private static final class SchemaFile
+	{
+		private final Path path;
+		private final Set<String> includes;
+		private final List<Integer> definitions;
+
+		private SchemaFile(Path path, Set<String> includes, List<Integer> definitions)
+		{
+			this.path = path;
+			this.includes = includes;
+			this.definitions = definitions;
+		}
+	}
+
+	/**
+	 * The files of one conversion, and what is shared by all of them
+	 */
+	private static final class Job
+	{
+		private final List<SchemaFile> files;
+		private final JsonNode properties;
+		private final DefinitionsRegistry definitions;
+		private final String targetNameSpaceUri;
+		private final Jsons2XsdSingleFile.OuterWrapping wrapping;
+		private final String name;
+		private final Exception[] failures;
+
+		private Job(List<SchemaFile> files, JsonNode properties, DefinitionsRegistry definitions, String targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping wrapping, String name)
+		{
+			this.files = files;
+			this.properties = properties;
+			this.definitions = definitions;
+			this.targetNameSpaceUri = targetNameSpaceUri;
+			this.wrapping = wrapping;
+			this.name = name;
+			this.failures = new Exception[files.size()];
+		}
+	}
+
+	/**
+	 * Splits the files in halves until a single one is left
+	 */
+	private final class WriteTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+		private final int from;
+		private final int to;
+
+		WriteTask(Job job, int from, int to)
+		{
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				try
+				{
+					write(job, job.files.get(from));
+				}
+				catch (IOException | RuntimeException exc)
+				{
+					// The other files are written anyway, the first file failing is thrown by the caller
+					job.failures[from] = exc;
+				}
+			}
+			else
+			{
+				final int middle = (from + to) >>> 1;
+				invokeAll(new WriteTask(job, from, middle), new WriteTask(job, middle, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Converts schemas posted over HTTP, keeping the JVM and the converter warm between conversions.
+ * <pre>
+ * POST /convert?namespace=&lt;uri&gt;&amp;name=&lt;name&gt;[&amp;wrapping=ELEMENT|TYPE]
+ *   The JSON schema as body, answered with the XSD. Warnings are sent as X-Conversion-Warning headers,
+ *   percent-encoded as UTF-8 like a URL query, so <code>URLDecoder.decode(value, "UTF-8")</code> reads them back.
+ * POST /batch?namespace=&lt;uri&gt;[&amp;wrapping=ELEMENT|TYPE]
+ *   A JSON object with the schemas by name as body, answered with a JSON object having, by the
+ *   same names, an object with either the <code>xsd</code> and its <code>warnings</code>, or the <code>error</code>.
+ * </pre>
+ * Schemas are converted as done by {@link Jsons2Xsd}, or by {@link Jsons2XsdSingleFile} when the
+ * server is given definitions. Bad requests get a 400 with the reason as text.
+ * <p>
+ * The conversions run on a fixed number of threads, with a bounded number of requests waiting
+ * for them. Requests beyond that get a 503 straight away, rather than queueing without limit.
+ * A batch is a single request, converting its schemas one after the other.
+ * <p>
+ * The JDK server writes the headers and the body of a response separately, so without
+ * <code>-Dsun.net.httpserver.nodelay=true</code> every response waits some 40 ms for the delayed
+ * ACK of the client. The property applies to every server of the JVM and is read once, so it is
+ * left to the application; the <code>serve</code> command of {@link Jsons2XsdCli} sets it.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdServer
+{
+	private static final String XML = "application/xml; charset=UTF-8";
+	private static final String JSON = "application/json; charset=UTF-8";
+	private static final String TEXT = "text/plain; charset=UTF-8";
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final Jsons2XsdConverter converter;
+	private final DefinitionsRegistry definitions;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final HttpServer server;
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * @param address Where to listen, usually on the loopback interface
+	 * @param threads The number of conversions run at once
+	 * @param queueDepth The number of requests waiting for a thread before the server answers 503
+	 * @param definitions Shared definitions to convert against, or null
+	 */
+	public Jsons2XsdServer(Jsons2XsdConverter converter, InetSocketAddress address, int threads, int queueDepth, DefinitionsRegistry definitions) throws IOException
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.notNull(address, "address cannot be null");
+		Assert.isTrue(threads > 0, "threads must be positive");
+		Assert.isTrue(queueDepth >= 0, "queueDepth cannot be negative");
+		this.converter = converter;
+		this.definitions = definitions;
+
+		final BlockingQueue<Runnable> queue = queueDepth > 0 ? new ArrayBlockingQueue<Runnable>(queueDepth) : new SynchronousQueue<Runnable>();
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, new ThreadPoolExecutor.AbortPolicy());
+
+		// The handlers only hand the exchanges to the workers, on the thread of the server
+		this.server = HttpServer.create(address, 0);
+		server.createContext("/convert", new Dispatcher()
+		{
+			@Override
+			void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException
+			{
+				convert(exchange, parameters);
+			}
+		});
+		server.createContext("/batch", new Dispatcher()
+		{
+			@Override
+			void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException
+			{
+				batch(exchange, parameters);
+			}
+		});
+	}
+
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * Stop listening, and wait for the conversions already accepted
+	 */
+	public void stop() throws InterruptedException
+	{
+		server.stop(0);
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * @return The address listened on, with the actual port when started on port 0
+	 */
+	public InetSocketAddress getAddress()
+	{
+		return server.getAddress();
+	}
+
+	private void convert(HttpExchange exchange, Map<String, String> parameters) throws IOException
+	{
+		final String targetNameSpaceUri = required(parameters, "namespace");
+		final String name = required(parameters, "name");
+		final String wrapping = parameters.containsKey("wrapping") ? parameters.get("wrapping") : "ELEMENT";
+		final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+
+		final ByteArrayOutputStream xsd = new ByteArrayOutputStream();
+		try (final Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
+		{
+			if (definitions != null)
+			{
+				converter.convert(reader, definitions, xsd, targetNameSpaceUri, Jsons2XsdSingleFile.OuterWrapping.valueOf(wrapping), name);
+			}
+			else
+			{
+				final Writer writer = Jsons2XsdConverter.newWriter(xsd);
+				converter.convert(reader, writer, targetNameSpaceUri, Jsons2Xsd.OuterWrapping.valueOf(wrapping), name, diagnostics);
+				writer.flush();
+			}
+		}
+
+		for (ConversionDiagnostics.Diagnostic diagnostic : diagnostics.getDiagnostics())
+		{
+			exchange.getResponseHeaders().add("X-Conversion-Warning", headerValue(diagnostic.toString()));
+		}
+		respond(exchange, 200, XML, xsd.toByteArray());
+	}
+
+	private void batch(HttpExchange exchange, Map<String, String> parameters) throws IOException
+	{
+		final String targetNameSpaceUri = required(parameters, "namespace");
+		final String wrapping = parameters.containsKey("wrapping") ? parameters.get("wrapping") : "ELEMENT";
+		final Jsons2Xsd.OuterWrapping inlineWrapping = Jsons2Xsd.OuterWrapping.valueOf(wrapping);
+		final Jsons2XsdSingleFile.OuterWrapping singleFileWrapping = Jsons2XsdSingleFile.OuterWrapping.valueOf(wrapping);
+		final JsonNode schemas;
+		try (final InputStream in = exchange.getRequestBody())
+		{
+			schemas = JsonTreeReader.read(mapper, mapper.getFactory().createParser(in));
+		}
+		Assert.isTrue(schemas != null && schemas.isObject(), "body should be a JSON object with the schemas by name");
+
+		final ObjectNode results = mapper.createObjectNode();
+		final Iterator<Entry<String, JsonNode>> fieldIter = schemas.fields();
+		while (fieldIter.hasNext())
+		{
+			final Entry<String, JsonNode> entry = fieldIter.next();
+			final ObjectNode result = results.putObject(entry.getKey());
+			final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+			final StringWriter xsd = new StringWriter();
+			try
+			{
+				if (definitions != null)
+				{
+					converter.convert(converter.newContext(), entry.getValue(), definitions, xsd, targetNameSpaceUri, singleFileWrapping, entry.getKey());
+				}
+				else
+				{
+					converter.convert(converter.newContext(diagnostics), entry.getValue(), xsd, targetNameSpaceUri, inlineWrapping, entry.getKey());
+				}
+				result.put("xsd", xsd.toString());
+				final ArrayNode warnings = result.putArray("warnings");
+				for (ConversionDiagnostics.Diagnostic diagnostic : diagnostics.getDiagnostics())
+				{
+					warnings.add(diagnostic.toString());
+				}
+			}
+			catch (RuntimeException exc)
+			{
+				result.put("error", String.valueOf(exc.getMessage()));
+			}
+		}
+		respond(exchange, 200, JSON, mapper.writeValueAsBytes(results));
+	}
+
+	private static String required(Map<String, String> parameters, String name)
+	{
+		final String value = parameters.get(name);
+		Assert.notNull(value, "parameter '" + name + "' is required");
+		return value;
+	}
+
+	/**
+	 * @return <code>value</code> with the line breaks that would end the header, the characters
+	 * beyond ASCII that headers cannot carry, and the '%' and '+' that decoding would change, percent-encoded as UTF-8
+	 */
+	static String headerValue(String value)
+	{
+		final StringBuilder sb = new StringBuilder(value.length());
+		for (byte b : value.getBytes(StandardCharsets.UTF_8))
+		{
+			final int c = b & 0xFF;
+			if (c < 0x20 || c > 0x7E || c == '%' || c == '+')
+			{
+				sb.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			}
+			else
+			{
+				sb.append((char) c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		// -1 means no body, 0 an unknown length
+		exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+		try (final OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+
+	private static Map<String, String> parameters(String query) throws IOException
+	{
+		final Map<String, String> parameters = new HashMap<>();
+		if (query != null)
+		{
+			for (String pair : query.split("&"))
+			{
+				final int idx = pair.indexOf('=');
+				if (idx > 0)
+				{
+					parameters.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Hands POST requests to the workers, answering 503 when they are all busy and the queue is full
+	 */
+	private abstract class Dispatcher implements HttpHandler
+	{
+		abstract void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			if (! "POST".equals(exchange.getRequestMethod()))
+			{
+				exchange.getResponseHeaders().set("Allow", "POST");
+				respond(exchange, 405, TEXT, new byte[0]);
+				return;
+			}
+
+			try
+			{
+				workers.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						process(exchange);
+					}
+				});
+			}
+			catch (RejectedExecutionException exc)
+			{
+				respond(exchange, 503, TEXT, "Too many conversions waiting, try again later".getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		private void process(HttpExchange exchange)
+		{
+			try
+			{
+				try
+				{
+					handle(exchange, parameters(exchange.getRequestURI().getRawQuery()));
+				}
+				catch (IllegalArgumentException | JsonProcessingException exc)
+				{
+					respond(exchange, 400, TEXT, String.valueOf(exc.getMessage()).getBytes(StandardCharsets.UTF_8));
+				}
+				catch (RuntimeException exc)
+				{
+					respond(exchange, 500, TEXT, String.valueOf(exc).getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			catch (IOException exc)
+			{
+				// The client went away, nobody left to tell
+			}
+			finally
+			{
+				exchange.close();
+			}
+		}
+	}
+}
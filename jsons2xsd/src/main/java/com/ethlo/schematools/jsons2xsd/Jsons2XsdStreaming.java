@@ -0,0 +1,766 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Converts a JSON schema the same way as {@link Jsons2Xsd}, but reads it token by token
+ * with a {@link JsonParser} instead of as a tree.
+ * <p>
+ * The file is read twice. The first pass records only what is needed before it is
+ * reached: the keywords of the root, and the keywords a schema declares after its
+ * nested schemas, like a <code>required</code> list following the <code>properties</code>.
+ * The second pass writes the XSD as it goes, holding the small keywords of the schemas
+ * it is nested in. Memory is bounded by the nesting depth, plus those recorded keywords.
+ * <p>
+ * Both passes keep the schemas they are in on a stack of {@link Frame}s rather than
+ * recursing, as {@link Traversal} does for trees, so the depth is not limited by the
+ * stack of the thread.
+ * <p>
+ * The type of a property named <code>oneOf</code> is decided on its own keywords, not on
+ * its nested schemas.
+ *
+ * @author mha
+ */
+final class Jsons2XsdStreaming
+{
+	/**
+	 * Keywords used to render a schema, all of them small values
+	 */
+	private static final Set<String> schemaKeywords = new HashSet<>(Arrays.asList("type", "format", "$ref", "enum", "required", "description", "minItems", "maxItems", "minimum", "maximum", "minLength", "maxLength", "pattern"));
+	
+	/**
+	 * Keywords needed before the nested schemas are rendered. The description only names
+	 * the items of arrays and the branches of a oneOf, and the values of an enum are only
+	 * read at the end.
+	 */
+	private static final Set<String> lookaheadKeywords = new HashSet<>(Arrays.asList("type", "format", "$ref", "enum", "required", "minItems", "maxItems"));
+
+	private final ConversionContext ctx;
+	private final XsdOutput out;
+	private final ObjectMapper mapper;
+	private final JsonParser parser;
+	private final Map<Long, String> lookahead;
+
+	/**
+	 * The open schemas and lists of schemas, the innermost on top
+	 */
+	private final Deque<Frame> frames = new ArrayDeque<>();
+
+	private Jsons2XsdStreaming(ConversionContext ctx, XsdOutput out, ObjectMapper mapper, JsonParser parser, Map<Long, String> lookahead)
+	{
+		this.ctx = ctx;
+		this.out = out;
+		this.mapper = mapper;
+		this.parser = parser;
+		this.lookahead = lookahead;
+	}
+
+	/**
+	 * @param factory Creates the parsers, and should not canonicalize field names, as every property name would be kept
+	 * @param mapper Reads the keywords
+	 */
+	static void convert(ConversionContext ctx, XsdOutput out, JsonFactory factory, ObjectMapper mapper, Path jsonSchema, String targetNameSpaceUri, Jsons2Xsd.OuterWrapping wrapping, String name) throws IOException
+	{
+		final Map<Long, String> lookahead = new HashMap<>();
+		final ObjectNode root;
+		ctx.phase(ConversionMetrics.Phase.PARSE);
+		try (final JsonParser parser = open(factory, jsonSchema))
+		{
+			Assert.isTrue(parser.nextToken() == JsonToken.START_OBJECT, "root should have type=\"object\"");
+			root = new Jsons2XsdStreaming(ctx, out, mapper, parser, lookahead).scan();
+		}
+		ctx.phase(ConversionMetrics.Phase.RENDER);
+
+		// The definitions take the place of the properties, see Jsons2Xsd.upgradeToDbsSchema
+		final String propertiesKeyword = root.has("definitions") ? "definitions" : "properties";
+		name = Jsons2Xsd.handleCamelCasing(name);
+
+		final String type = root.has("definitions") ? "object" : root.path("type").textValue();
+		Assert.isTrue("object".equals(type), "root should have type=\"object\"");
+		Assert.isTrue(root.has(propertiesKeyword), "\"properties\" property should be found in root of JSON schema\"");
+
+		Jsons2Xsd.startSchema(ctx, out, targetNameSpaceUri, wrapping, name);
+		final List<String> requiredList = Jsons2Xsd.getRequiredList(root);
+		try (final JsonParser parser = open(factory, jsonSchema))
+		{
+			parser.nextToken();
+			new Jsons2XsdStreaming(ctx, out, mapper, parser, lookahead).render(propertiesKeyword, requiredList);
+		}
+		out.endElement();
+		out.endElement();
+		out.endElement();
+	}
+
+	private static JsonParser open(JsonFactory factory, Path jsonSchema) throws IOException
+	{
+		return factory.createParser(Files.newInputStream(jsonSchema));
+	}
+
+	/**
+	 * First pass, with the parser on the start of the root
+	 *
+	 * @return The keywords of the root
+	 */
+	private ObjectNode scan() throws IOException
+	{
+		final Scan root = new Scan(true, false);
+		run(root);
+		return root.late;
+	}
+
+	/**
+	 * Second pass, with the parser on the start of the root
+	 */
+	private void render(String propertiesKeyword, List<String> requiredList) throws IOException
+	{
+		run(new Root(propertiesKeyword, requiredList));
+	}
+
+	/**
+	 * Read until <code>first</code>, and the frames it opens, are done
+	 */
+	private void run(Frame first) throws IOException
+	{
+		frames.push(first);
+		while (! frames.isEmpty())
+		{
+			frames.peek().next();
+		}
+	}
+
+	/**
+	 * First pass over a schema that may not be an object, with the parser on its start
+	 */
+	private void scanSchema(boolean named) throws IOException
+	{
+		if (parser.getCurrentToken() == JsonToken.START_OBJECT)
+		{
+			frames.push(new Scan(false, named));
+		}
+		else
+		{
+			parser.skipChildren();
+		}
+	}
+
+	/**
+	 * @param keyword The keyword holding the properties, for the diagnostics
+	 */
+	private void readProperties(String keyword, List<String> requiredList) throws IOException
+	{
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+		{
+			parser.skipChildren();
+			return;
+		}
+		frames.push(new Properties(keyword, requiredList));
+	}
+
+	/**
+	 * Second pass over a schema, with the parser on its start
+	 *
+	 * @param levels The levels of the context to leave once it is read
+	 */
+	private void readSchema(SchemaElement element, int levels) throws IOException
+	{
+		frames.push(leave(levels));
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+		{
+			// Not a schema, fails the same way as the tree-based conversion
+			final JsonNode value = readValue(mapper, parser);
+			element.end(value, element.begin(value), false);
+			return;
+		}
+		frames.push(new Schema(element));
+	}
+
+	private void readNested(SchemaElement element, String field, JsonNode keywords) throws IOException
+	{
+		switch (field)
+		{
+			case "properties":
+				out.startElement("complexType");
+				out.startElement("sequence");
+				frames.push(end(2));
+				readProperties(field, Jsons2Xsd.getRequiredList(keywords));
+				break;
+
+			case "oneOf":
+				out.startElement("complexType");
+				out.startElement("sequence");
+				out.startElement("choice");
+				frames.push(end(3));
+				if (parser.getCurrentToken() == JsonToken.START_ARRAY)
+				{
+					frames.push(new Choice(field));
+				}
+				else
+				{
+					ctx.enter(field);
+					ctx.warn(ConversionDiagnostics.Kind.MALFORMED_ONEOF, null);
+					ctx.leave(1);
+					parser.skipChildren();
+				}
+				break;
+
+			default:
+				ctx.enter(field);
+				readSchema(new Items(element.getName(), keywords), 1);
+				break;
+		}
+	}
+
+	/**
+	 * Ends the last <code>count</code> elements started
+	 */
+	private Frame end(final int count)
+	{
+		return new Frame()
+		{
+			@Override
+			void next()
+			{
+				frames.pop();
+				for (int idx = 0; idx < count; idx++)
+				{
+					out.endElement();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Leaves the last <code>count</code> levels entered, see {@link ConversionContext#leave(int)}
+	 */
+	private Frame leave(final int count)
+	{
+		return new Frame()
+		{
+			@Override
+			void next()
+			{
+				frames.pop();
+				ctx.leave(count);
+			}
+		};
+	}
+
+	private static boolean isLookahead(String field, boolean named)
+	{
+		return lookaheadKeywords.contains(field) || (named && field.equals("description"));
+	}
+
+	private static boolean isNested(String field)
+	{
+		return field.equals("properties") || field.equals("items") || field.equals("oneOf");
+	}
+
+	private static JsonNode readValue(ObjectMapper mapper, JsonParser parser) throws IOException
+	{
+		final JsonNode value = mapper.readTree(parser);
+		return value != null ? value : NullNode.getInstance();
+	}
+
+	/**
+	 * Position of the current token, the same in both passes over the file
+	 */
+	private static long location(JsonParser parser)
+	{
+		final JsonLocation location = parser.getTokenLocation();
+		return Math.max(location.getByteOffset(), location.getCharOffset());
+	}
+
+	/**
+	 * A schema or list of schemas being read, which reads up to its next nested schema,
+	 * opening a frame for it, or to its end, removing itself
+	 */
+	private abstract class Frame
+	{
+		abstract void next() throws IOException;
+	}
+
+	/**
+	 * First pass over a schema. Records the keywords declared after its first nested
+	 * schema, or all keywords for the root.
+	 */
+	private class Scan extends Frame
+	{
+		private final boolean root;
+		private final boolean named;
+		private final long location;
+		private ObjectNode late;
+		private boolean nested;
+
+		/**
+		 * @param named Whether the schema is named after its description
+		 */
+		Scan(boolean root, boolean named)
+		{
+			this.root = root;
+			this.named = named;
+			this.location = location(parser);
+			this.late = root ? mapper.createObjectNode() : null;
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (parser.nextToken() != JsonToken.FIELD_NAME)
+			{
+				frames.pop();
+				if (late != null && ! root)
+				{
+					// Kept as text, which takes a fraction of the memory of the nodes
+					lookahead.put(location, late.toString());
+				}
+				return;
+			}
+
+			final String field = parser.getCurrentName();
+			final JsonToken token = parser.nextToken();
+			if (isNested(field) || (root && field.equals("definitions")))
+			{
+				if (root || (nested && field.equals("oneOf")))
+				{
+					late = late != null ? late : mapper.createObjectNode();
+					late.put(field, true);
+				}
+				nested = true;
+
+				if (field.equals("items") && token == JsonToken.START_OBJECT)
+				{
+					frames.push(new Scan(false, true));
+				}
+				else if (field.equals("oneOf") && token == JsonToken.START_ARRAY)
+				{
+					frames.push(new ScanList(true));
+				}
+				else if (! field.equals("items") && ! field.equals("oneOf") && token == JsonToken.START_OBJECT)
+				{
+					frames.push(new ScanList(false));
+				}
+				else
+				{
+					parser.skipChildren();
+				}
+			}
+			else if (root ? schemaKeywords.contains(field) : nested && isLookahead(field, named))
+			{
+				late = late != null ? late : mapper.createObjectNode();
+				if (! root && field.equals("enum"))
+				{
+					// Only decides the type, the values are read again by the second pass
+					late.put(field, true);
+					parser.skipChildren();
+				}
+				else
+				{
+					late.set(field, readValue(mapper, parser));
+				}
+			}
+			else
+			{
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * First pass over the branches of a oneOf, or the schemas of an object by name
+	 */
+	private class ScanList extends Frame
+	{
+		private final boolean array;
+
+		ScanList(boolean array)
+		{
+			this.array = array;
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (array ? parser.nextToken() == JsonToken.END_ARRAY : parser.nextToken() != JsonToken.FIELD_NAME)
+			{
+				frames.pop();
+				return;
+			}
+			if (! array)
+			{
+				parser.nextToken();
+			}
+			// The branches of a oneOf are named after their description
+			scanSchema(array);
+		}
+	}
+
+	/**
+	 * Second pass over the root, rendering only its properties
+	 */
+	private class Root extends Frame
+	{
+		private final String propertiesKeyword;
+		private final List<String> requiredList;
+		private boolean rendered;
+
+		Root(String propertiesKeyword, List<String> requiredList)
+		{
+			this.propertiesKeyword = propertiesKeyword;
+			this.requiredList = requiredList;
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (parser.nextToken() != JsonToken.FIELD_NAME)
+			{
+				frames.pop();
+				return;
+			}
+
+			final String field = parser.getCurrentName();
+			parser.nextToken();
+			if (! rendered && field.equals(propertiesKeyword))
+			{
+				rendered = true;
+				readProperties(propertiesKeyword, requiredList);
+			}
+			else
+			{
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private class Properties extends Frame
+	{
+		private final String keyword;
+		private final List<String> requiredList;
+
+		Properties(String keyword, List<String> requiredList)
+		{
+			this.keyword = keyword;
+			this.requiredList = requiredList;
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (parser.nextToken() != JsonToken.FIELD_NAME)
+			{
+				frames.pop();
+				return;
+			}
+
+			final String key = parser.getCurrentName();
+			final JsonToken token = parser.nextToken();
+			if ((token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) && Jsons2Xsd.isPrunedKeyword(key))
+			{
+				return;
+			}
+			ctx.enter(keyword, key);
+			readSchema(new Property(key, requiredList.contains(key)), 2);
+		}
+	}
+
+	/**
+	 * The branches of a oneOf, with the parser on the array
+	 */
+	private class Choice extends Frame
+	{
+		private final String field;
+		private int count = 1;
+
+		Choice(String field)
+		{
+			this.field = field;
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (parser.nextToken() == JsonToken.END_ARRAY)
+			{
+				frames.pop();
+				return;
+			}
+			ctx.enter(field, count - 1);
+			readSchema(new Property(count++), 2);
+		}
+	}
+
+	/**
+	 * Second pass over a schema. The element is started at the first nested schema, or at
+	 * the end when there is none.
+	 */
+	private class Schema extends Frame
+	{
+		private final SchemaElement element;
+		private final String late;
+		private final ObjectNode keywords;
+		private String xsdType;
+		private boolean rendered;
+
+		Schema(SchemaElement element)
+		{
+			this.element = element;
+			this.late = lookahead.remove(location(parser));
+			this.keywords = mapper.createObjectNode();
+		}
+
+		@Override
+		void next() throws IOException
+		{
+			if (parser.nextToken() != JsonToken.FIELD_NAME)
+			{
+				frames.pop();
+				if (xsdType == null)
+				{
+					xsdType = element.begin(keywords);
+				}
+				element.end(keywords, xsdType, rendered);
+				return;
+			}
+
+			final String field = parser.getCurrentName();
+			parser.nextToken();
+			if (isNested(field))
+			{
+				if (field.equals("oneOf"))
+				{
+					keywords.put(field, true);
+				}
+				if (xsdType == null)
+				{
+					if (late != null)
+					{
+						keywords.setAll((ObjectNode) mapper.readTree(late));
+					}
+					xsdType = element.begin(keywords);
+				}
+
+				if (! rendered && element.renders(xsdType, field, keywords))
+				{
+					rendered = true;
+					readNested(element, field, keywords);
+				}
+				else
+				{
+					parser.skipChildren();
+				}
+			}
+			else if (schemaKeywords.contains(field))
+			{
+				keywords.set(field, readValue(mapper, parser));
+			}
+			else
+			{
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * The XSD element written for a schema
+	 */
+	private abstract class SchemaElement
+	{
+		/**
+		 * Start the element, once the keywords deciding its type are known
+		 *
+		 * @return The XSD type of the schema
+		 */
+		abstract String begin(JsonNode keywords);
+
+		/**
+		 * End the element, after all keywords have been read
+		 */
+		abstract void end(JsonNode keywords, String xsdType, boolean rendered);
+
+		abstract String getName();
+
+		boolean renders(String xsdType, String field, JsonNode keywords)
+		{
+			if (xsdType.equals("object"))
+			{
+				return field.equals("oneOf") || (field.equals("properties") && ! keywords.has("oneOf"));
+			}
+			return xsdType.equals("array") && field.equals("items");
+		}
+	}
+
+	/**
+	 * A property, or a branch of a oneOf
+	 */
+	private class Property extends SchemaElement
+	{
+		private final boolean required;
+		private final int count;
+		private String key;
+		private String name;
+
+		Property(String key, boolean required)
+		{
+			this.key = key;
+			this.required = required;
+			this.count = 0;
+		}
+
+		Property(int count)
+		{
+			this.required = true;
+			this.count = count;
+		}
+
+		@Override
+		String begin(JsonNode keywords)
+		{
+			if (key == null)
+			{
+				key = Jsons2Xsd.choiceElementName(keywords, count);
+				ctx.warn(ConversionDiagnostics.Kind.CHOICE_ELEMENT_NAME, key);
+			}
+
+			final String xsdType = Jsons2Xsd.determineXsdType(ctx, key, keywords);
+			name = Jsons2Xsd.elementName(key);
+			out.startElement("element");
+			out.attribute("name", name);
+			if (! required)
+			{
+				out.attribute("minOccurs", "0");
+			}
+			return xsdType;
+		}
+
+		@Override
+		void end(JsonNode keywords, String xsdType, boolean rendered)
+		{
+			switch (xsdType)
+			{
+				case "array":
+					if (! rendered)
+					{
+						// No items, fails the same way as the tree-based conversion
+						final Items items = new Items(name, keywords);
+						items.end(MissingNode.getInstance(), items.begin(MissingNode.getInstance()), false);
+					}
+					break;
+
+				case "object":
+					break;
+
+				case "decimal":
+				case "int":
+					Jsons2Xsd.handleNumber(out, xsdType, keywords);
+					break;
+
+				case "enum":
+					Jsons2Xsd.handleEnum(out, keywords);
+					break;
+
+				case "string":
+					Jsons2Xsd.handleString(ctx, out, keywords);
+					break;
+
+				case "reference":
+					Jsons2Xsd.handleReference(ctx, out, keywords);
+					break;
+
+				default:
+					out.attribute("type", xsdType);
+					break;
+			}
+			out.endElement();
+		}
+
+		@Override
+		String getName()
+		{
+			return name;
+		}
+	}
+
+	/**
+	 * The items of an array
+	 */
+	private class Items extends SchemaElement
+	{
+		private final String name;
+		private final JsonNode array;
+
+		Items(String name, JsonNode array)
+		{
+			this.name = name;
+			this.array = array;
+		}
+
+		@Override
+		String begin(JsonNode items)
+		{
+			final String suggestedArrayElementName = Jsons2Xsd.arrayElementName(name, items);
+			ctx.warn(ConversionDiagnostics.Kind.ARRAY_ELEMENT_NAME, suggestedArrayElementName);
+
+			final String arrayXsdType = Jsons2Xsd.determineXsdType(ctx, items.path("type").textValue(), items);
+			out.startElement("complexType");
+			out.startElement("sequence");
+			out.startElement("element");
+			out.attribute("name", suggestedArrayElementName);
+
+			final Integer minItems = Jsons2Xsd.getIntVal(array, "minItems");
+			out.attribute("minOccurs", minItems != null ? Integer.toString(minItems) : "0");
+			final Integer maxItems = Jsons2Xsd.getIntVal(array, "maxItems");
+			out.attribute("maxOccurs", maxItems != null ? Integer.toString(maxItems) : "unbounded");
+
+			if (arrayXsdType.equals("reference"))
+			{
+				Jsons2Xsd.handleReference(ctx, out, items);
+			}
+			else if (! arrayXsdType.equals("object"))
+			{
+				out.attribute("type", arrayXsdType);
+			}
+			return arrayXsdType;
+		}
+
+		@Override
+		void end(JsonNode keywords, String xsdType, boolean rendered)
+		{
+			out.endElement();
+			out.endElement();
+			out.endElement();
+		}
+
+		@Override
+		String getName()
+		{
+			return name;
+		}
+
+		@Override
+		boolean renders(String xsdType, String field, JsonNode keywords)
+		{
+			// Arrays of arrays only get a type
+			return xsdType.equals("object") && super.renders(xsdType, field, keywords);
+		}
+	}
+}
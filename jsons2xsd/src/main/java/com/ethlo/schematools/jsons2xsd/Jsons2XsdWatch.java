@@ -0,0 +1,563 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Keeps the XSDs of a directory of JSON schemas up to date while the schemas are edited,
+ * converting only what changed.
+ * <p>
+ * {@link #update()} converts the schemas whose content changed since the last update, going by
+ * a SHA-256 hash of the files whose size or modification time changed, and removes the XSDs of
+ * the schemas that are gone. The first update converts them all. The parsed schemas are kept, so
+ * when the definitions file changes, the schemas reaching a changed definition, directly or
+ * through other definitions, are converted again without reading them, and the others not at all.
+ * Unchanged definitions are written as rendered before, see {@link Jsons2XsdIncremental}.
+ * <p>
+ * {@link #watch(long, TimeUnit, Listener)} updates whenever files change below the directory, as
+ * reported by a {@link WatchService}, once nothing changed for a quiet period, so saving many
+ * files at once gives a single update.
+ *
+ * @author mha
+ */
+public final class Jsons2XsdWatch implements Closeable
+{
+	/**
+	 * Told about every update made while watching
+	 */
+	public interface Listener
+	{
+		void updated(Update update);
+	}
+
+	private final Jsons2XsdConverter converter;
+	private final Path directory;
+	private final String glob;
+	private final Path outputDirectory;
+	private final Jsons2XsdBatch.Naming naming;
+	private final Jsons2Xsd.OuterWrapping wrapping;
+
+	private final Path definitionsFile;
+	private final Jsons2XsdSingleFile.OuterWrapping singleFileWrapping;
+	private final Jsons2XsdIncremental incremental;
+
+	private final Map<Path, Schema> schemas = new HashMap<>();
+	private DefinitionsRegistry definitions;
+	private final FileState definitionsState = new FileState();
+	private Exception definitionsFailure;
+	private volatile WatchService watchService;
+	private volatile boolean closed;
+
+	/**
+	 * Convert the schemas as done by {@link Jsons2Xsd}
+	 *
+	 * @param directory The directory the schemas are in
+	 * @param glob The schemas to convert, relative to <code>directory</code>, like <code>**.json</code>
+	 * @param outputDirectory Where the XSDs are written, in the same relative directories as the schemas
+	 */
+	public Jsons2XsdWatch(Jsons2XsdConverter converter, Path directory, String glob, Path outputDirectory, Jsons2XsdBatch.Naming naming, Jsons2Xsd.OuterWrapping wrapping)
+	{
+		this(converter, directory, glob, outputDirectory, naming, wrapping, null, null);
+	}
+
+	/**
+	 * Convert the schemas against a definitions file, as done by {@link Jsons2XsdSingleFile}.
+	 * The definitions file is left out of the schemas when it is in the directory.
+	 *
+	 * @param directory The directory the schemas are in
+	 * @param glob The schemas to convert, relative to <code>directory</code>, like <code>**.json</code>
+	 * @param outputDirectory Where the XSDs are written, in the same relative directories as the schemas
+	 */
+	public Jsons2XsdWatch(Jsons2XsdConverter converter, Path directory, String glob, Path outputDirectory, Jsons2XsdBatch.Naming naming, Path definitionsFile, Jsons2XsdSingleFile.OuterWrapping wrapping)
+	{
+		this(converter, directory, glob, outputDirectory, naming, null, definitionsFile, wrapping);
+		Assert.notNull(definitionsFile, "definitionsFile cannot be null");
+		Assert.notNull(wrapping, "wrapping cannot be null");
+	}
+
+	private Jsons2XsdWatch(Jsons2XsdConverter converter, Path directory, String glob, Path outputDirectory, Jsons2XsdBatch.Naming naming, Jsons2Xsd.OuterWrapping wrapping, Path definitionsFile, Jsons2XsdSingleFile.OuterWrapping singleFileWrapping)
+	{
+		Assert.notNull(converter, "converter cannot be null");
+		Assert.notNull(directory, "directory cannot be null");
+		Assert.notNull(glob, "glob cannot be null");
+		Assert.notNull(outputDirectory, "outputDirectory cannot be null");
+		Assert.notNull(naming, "naming cannot be null");
+		Assert.isTrue(wrapping != null || definitionsFile != null, "wrapping cannot be null");
+		this.converter = converter;
+		this.directory = directory.toAbsolutePath().normalize();
+		this.glob = glob;
+		this.outputDirectory = outputDirectory;
+		this.naming = naming;
+		this.wrapping = wrapping;
+		this.definitionsFile = definitionsFile != null ? definitionsFile.toAbsolutePath().normalize() : null;
+		this.singleFileWrapping = singleFileWrapping;
+		this.incremental = definitionsFile != null ? new Jsons2XsdIncremental(converter) : null;
+	}
+
+	/**
+	 * Bring the XSDs up to date with the schemas and the definitions
+	 */
+	public synchronized Update update() throws IOException
+	{
+		final long start = System.nanoTime();
+		final Update update = new Update();
+
+		Set<String> changedDefinitions = Collections.emptySet();
+		if (definitionsFile != null)
+		{
+			try
+			{
+				final Set<String> reloaded = reloadDefinitions();
+				if (reloaded != null)
+				{
+					changedDefinitions = reloaded;
+					definitionsFailure = null;
+				}
+			}
+			catch (IOException | RuntimeException exc)
+			{
+				definitionsFailure = exc;
+			}
+			if (definitionsFailure != null)
+			{
+				// Nothing is converted until the definitions file is fixed, not even against the previous one
+				update.failures.put(definitionsFile, definitionsFailure);
+				update.elapsedNanos = System.nanoTime() - start;
+				return update;
+			}
+		}
+
+		final List<Path> found = Jsons2XsdBatch.findSchemas(directory, glob);
+		if (definitionsFile != null && definitionsFile.startsWith(directory))
+		{
+			found.remove(directory.relativize(definitionsFile));
+		}
+		final Set<Path> foundSet = new HashSet<>(found);
+
+		final Iterator<Path> gone = schemas.keySet().iterator();
+		while (gone.hasNext())
+		{
+			final Path schema = gone.next();
+			if (! foundSet.contains(schema))
+			{
+				gone.remove();
+				Files.deleteIfExists(target(schema));
+				update.removed.add(schema);
+			}
+		}
+
+		for (Path schema : found)
+		{
+			Schema state = schemas.get(schema);
+			if (state == null)
+			{
+				state = new Schema();
+				schemas.put(schema, state);
+			}
+
+			final byte[] content;
+			try
+			{
+				content = state.file.changed(directory.resolve(schema));
+			}
+			catch (NoSuchFileException exc)
+			{
+				// Deleted since it was found, the next update removes it
+				continue;
+			}
+
+			if (content != null)
+			{
+				convert(schema, state, content, update);
+			}
+			else if (state.rootNode != null ? state.needs(reachable(state.rootNode), changedDefinitions) : state.failed && ! changedDefinitions.isEmpty())
+			{
+				convert(schema, state, null, update);
+			}
+		}
+
+		Collections.sort(update.removed);
+		update.elapsedNanos = System.nanoTime() - start;
+		return update;
+	}
+
+	/**
+	 * Update now and whenever files change, until closed. Returns when closed from another thread.
+	 *
+	 * @param quietPeriod How long nothing has to change before updating
+	 */
+	public void watch(long quietPeriod, TimeUnit unit, Listener listener) throws IOException, InterruptedException
+	{
+		Assert.isTrue(quietPeriod >= 0, "quietPeriod cannot be negative");
+		Assert.notNull(unit, "unit cannot be null");
+		Assert.notNull(listener, "listener cannot be null");
+
+		try (final WatchService service = directory.getFileSystem().newWatchService())
+		{
+			watchService = service;
+			if (closed)
+			{
+				return;
+			}
+			registerAll(service, directory);
+			if (definitionsFile != null && ! definitionsFile.startsWith(directory))
+			{
+				definitionsFile.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			}
+
+			listener.updated(update());
+			while (true)
+			{
+				WatchKey key = service.take();
+				do
+				{
+					handle(service, key);
+					key = service.poll(quietPeriod, unit);
+				}
+				while (key != null);
+
+				listener.updated(update());
+			}
+		}
+		catch (ClosedWatchServiceException exc)
+		{
+			// Closed
+		}
+	}
+
+	/**
+	 * Stop watching
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		final WatchService service = watchService;
+		if (service != null)
+		{
+			service.close();
+		}
+	}
+
+	/**
+	 * @return The definitions that changed, were added or were removed, or all when their order
+	 * changed, or null when the file did not change
+	 */
+	private Set<String> reloadDefinitions() throws IOException
+	{
+		final byte[] content = definitionsState.changed(definitionsFile);
+		if (content == null)
+		{
+			return null;
+		}
+
+		final DefinitionsRegistry loaded;
+		try (final Reader reader = reader(content))
+		{
+			loaded = converter.loadDefinitions(reader);
+		}
+		final DefinitionsRegistry previous = definitions;
+		definitions = loaded;
+
+		final Set<String> changed = new HashSet<>();
+		final List<String> kept = new ArrayList<>();
+		for (int idx = 0; idx < loaded.size(); idx++)
+		{
+			final String name = loaded.getName(idx);
+			final JsonNode before = previous != null ? previous.get(name) : null;
+			if (before == null || ! Jsons2XsdIncremental.sameTree(before, loaded.get(idx)))
+			{
+				changed.add(name);
+			}
+			if (before != null)
+			{
+				kept.add(name);
+			}
+		}
+		if (previous != null)
+		{
+			final List<String> keptBefore = new ArrayList<>();
+			for (String name : previous.getNames())
+			{
+				if (loaded.indexOf(name) < 0)
+				{
+					changed.add(name);
+				}
+				else
+				{
+					keptBefore.add(name);
+				}
+			}
+			// The definitions are written in the order of the file
+			if (! kept.equals(keptBefore))
+			{
+				changed.addAll(loaded.getNames());
+			}
+		}
+		return changed;
+	}
+
+	private void convert(Path schema, Schema state, byte[] content, Update update)
+	{
+		final Path target = target(schema);
+		final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+		final ConversionContext ctx = converter.newContext(diagnostics);
+		try
+		{
+			if (content != null)
+			{
+				state.rootNode = null;
+				try (final Reader reader = reader(content))
+				{
+					state.rootNode = converter.readTree(ctx, reader);
+				}
+			}
+
+			Files.createDirectories(target.toAbsolutePath().getParent());
+			try (final Writer xsd = Jsons2XsdConverter.newWriter(new BufferedOutputStream(Files.newOutputStream(target))))
+			{
+				if (definitionsFile != null)
+				{
+					state.reachable = reachable(state.rootNode);
+					incremental.convert(ctx, state.rootNode, definitions, xsd, naming.getTargetNamespace(schema), singleFileWrapping, naming.getName(schema));
+				}
+				else
+				{
+					converter.convert(ctx, state.rootNode, xsd, naming.getTargetNamespace(schema), wrapping, naming.getName(schema));
+				}
+			}
+			state.failed = false;
+			update.converted.add(schema);
+			if (! diagnostics.isEmpty())
+			{
+				update.diagnostics.put(schema, diagnostics);
+			}
+		}
+		catch (IOException | RuntimeException exc)
+		{
+			state.failed = true;
+			update.failures.put(schema, exc);
+			try
+			{
+				Files.deleteIfExists(target);
+			}
+			catch (IOException ignored)
+			{
+				// The failure is already reported
+			}
+		}
+	}
+
+	/**
+	 * @return The names of the definitions reachable from <code>rootNode</code>, or none without definitions
+	 */
+	private Set<String> reachable(JsonNode rootNode)
+	{
+		final Set<String> names = new HashSet<>();
+		if (definitions != null)
+		{
+			final BitSet reachable = definitions.getReferenceGraph().reachable(rootNode);
+			for (int idx = reachable.nextSetBit(0); idx >= 0; idx = reachable.nextSetBit(idx + 1))
+			{
+				names.add(definitions.getName(idx));
+			}
+		}
+		return names;
+	}
+
+	private Path target(Path schema)
+	{
+		return outputDirectory.resolve(Jsons2XsdBatch.withoutExtension(schema) + ".xsd");
+	}
+
+	private void registerAll(final WatchService service, Path start) throws IOException
+	{
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+			{
+				dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Watch the directories created in the tree. The files are found by the update.
+	 */
+	private void handle(WatchService service, WatchKey key) throws IOException
+	{
+		final Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && dir.startsWith(directory))
+			{
+				final Path created = dir.resolve((Path) event.context());
+				if (Files.isDirectory(created))
+				{
+					registerAll(service, created);
+				}
+			}
+		}
+		key.reset();
+	}
+
+	private static Reader reader(byte[] content)
+	{
+		return new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * What is kept of a schema between updates
+	 */
+	private static final class Schema
+	{
+		private final FileState file = new FileState();
+		private JsonNode rootNode;
+		private Set<String> reachable = Collections.emptySet();
+		private boolean failed;
+
+		/**
+		 * @return Whether the XSD is out of date with the definitions
+		 */
+		private boolean needs(Set<String> reachable, Set<String> changedDefinitions)
+		{
+			return failed || ! reachable.equals(this.reachable) || ! Collections.disjoint(reachable, changedDefinitions);
+		}
+	}
+
+	/**
+	 * Size, modification time and hash of a file when last read
+	 */
+	private static final class FileState
+	{
+		private long size = -1;
+		private FileTime modified;
+		private byte[] hash;
+
+		/**
+		 * @return The content of the file if it changed, otherwise null
+		 */
+		private byte[] changed(Path file) throws IOException
+		{
+			final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (attributes.size() == size && attributes.lastModifiedTime().equals(modified))
+			{
+				return null;
+			}
+
+			final byte[] content = Files.readAllBytes(file);
+			final byte[] hash = sha256(content);
+			size = attributes.size();
+			modified = attributes.lastModifiedTime();
+			if (MessageDigest.isEqual(hash, this.hash))
+			{
+				return null;
+			}
+			this.hash = hash;
+			return content;
+		}
+
+		private static byte[] sha256(byte[] content)
+		{
+			try
+			{
+				return MessageDigest.getInstance("SHA-256").digest(content);
+			}
+			catch (NoSuchAlgorithmException exc)
+			{
+				throw new IllegalStateException(exc);
+			}
+		}
+	}
+
+	/**
+	 * Outcome of an update
+	 */
+	public static final class Update
+	{
+		private final List<Path> converted = new ArrayList<>();
+		private final List<Path> removed = new ArrayList<>();
+		private final Map<Path, Exception> failures = new TreeMap<>();
+		private final Map<Path, ConversionDiagnostics> diagnostics = new TreeMap<>();
+		private long elapsedNanos;
+
+		/**
+		 * @return The schemas converted, sorted
+		 */
+		public List<Path> getConverted()
+		{
+			return Collections.unmodifiableList(converted);
+		}
+
+		/**
+		 * @return The schemas that are gone, whose XSD was deleted, sorted
+		 */
+		public List<Path> getRemoved()
+		{
+			return Collections.unmodifiableList(removed);
+		}
+
+		/**
+		 * @return The schemas, or the definitions file, that could not be converted, with the reason, sorted by path
+		 */
+		public Map<Path, Exception> getFailures()
+		{
+			return Collections.unmodifiableMap(failures);
+		}
+
+		/**
+		 * @return The diagnostics of the converted schemas that have any, sorted by path
+		 */
+		public Map<Path, ConversionDiagnostics> getDiagnostics()
+		{
+			return Collections.unmodifiableMap(diagnostics);
+		}
+
+		public long getElapsed(TimeUnit unit)
+		{
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("Converted %d, removed %d and failed %d schemas in %d ms",
+				converted.size(), removed.size(), failures.size(), getElapsed(TimeUnit.MILLISECONDS));
+		}
+	}
+}
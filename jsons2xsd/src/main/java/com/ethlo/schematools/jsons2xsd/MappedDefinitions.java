@@ -0,0 +1,383 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A definitions file mapped into memory, with the byte range of every definition, to parse
+ * the definitions one at a time when first needed.
+ * <p>
+ * The ranges are found by a single pass over the bytes of the file, which follows strings and
+ * nesting only, without parsing any values; a definition is parsed, and so fully checked, when
+ * first used. The ranges can be kept in an index file, which is used instead of the pass as long
+ * as the size and modification time of the definitions file match. The file is expected in
+ * UTF-8, and must not change while mapped.
+ *
+ * @author mha
+ */
+final class MappedDefinitions
+{
+	private static final int MAGIC = 0x4A32584A;
+	private static final int VERSION = 1;
+
+	private final ObjectMapper mapper;
+	private final ByteBuffer buffer;
+	private final List<String> names;
+
+	/**
+	 * Start and end of every definition, by position in the file
+	 */
+	private final int[] ranges;
+
+	private MappedDefinitions(ObjectMapper mapper, ByteBuffer buffer, List<String> names, int[] ranges)
+	{
+		this.mapper = mapper;
+		this.buffer = buffer;
+		this.names = Collections.unmodifiableList(names);
+		this.ranges = ranges;
+	}
+
+	/**
+	 * @param indexFile Where the ranges are kept between runs, or null to always find them
+	 */
+	static MappedDefinitions map(ObjectMapper mapper, Path file, Path indexFile) throws IOException
+	{
+		final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		Assert.isTrue(attributes.size() <= Integer.MAX_VALUE, file + " is too large to map, at " + attributes.size() + " bytes");
+
+		final ByteBuffer buffer;
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, attributes.size());
+		}
+
+		final long modified = attributes.lastModifiedTime().toMillis();
+		if (indexFile != null)
+		{
+			final MappedDefinitions indexed = readIndex(mapper, buffer, indexFile, attributes.size(), modified);
+			if (indexed != null)
+			{
+				return indexed;
+			}
+		}
+
+		final MappedDefinitions scanned = scan(mapper, buffer);
+		if (indexFile != null)
+		{
+			try
+			{
+				scanned.writeIndex(indexFile, attributes.size(), modified);
+			}
+			catch (IOException exc)
+			{
+				// Found again next time
+			}
+		}
+		return scanned;
+	}
+
+	List<String> getNames()
+	{
+		return names;
+	}
+
+	/**
+	 * Parse the definition at <code>idx</code>
+	 */
+	JsonNode parse(int idx) throws IOException
+	{
+		// Through Buffer, as ByteBuffer only overrides these from Java 9
+		final ByteBuffer definition = buffer.duplicate();
+		((Buffer) definition).limit(ranges[idx * 2 + 1]).position(ranges[idx * 2]);
+		return JsonTreeReader.read(mapper, mapper.getFactory().createParser(new ByteBufferInputStream(definition)));
+	}
+
+	/**
+	 * Find the ranges of the fields of the <code>definitions</code> object at the root
+	 */
+	private static MappedDefinitions scan(ObjectMapper mapper, ByteBuffer buffer) throws IOException
+	{
+		final List<String> names = new ArrayList<>();
+		final Map<String, Integer> index = new HashMap<>();
+		int[] ranges = new int[64];
+
+		final Scanner in = new Scanner(mapper, buffer);
+		in.expect('{');
+		if (! in.next('}'))
+		{
+			do
+			{
+				final boolean definitions = "definitions".equals(in.string());
+				in.expect(':');
+				if (! definitions || in.peek() != '{')
+				{
+					in.skipValue();
+					continue;
+				}
+
+				in.expect('{');
+				if (in.next('}'))
+				{
+					continue;
+				}
+				do
+				{
+					final String name = in.string();
+					in.expect(':');
+					final int start = in.skipWhitespace();
+					in.skipValue();
+
+					// A name given twice keeps its first position and its last value, as when parsed into a tree
+					Integer idx = index.get(name);
+					if (idx == null)
+					{
+						idx = names.size();
+						index.put(name, idx);
+						names.add(name);
+						if (ranges.length < names.size() * 2)
+						{
+							ranges = Arrays.copyOf(ranges, ranges.length * 2);
+						}
+					}
+					ranges[idx * 2] = start;
+					ranges[idx * 2 + 1] = in.position;
+				}
+				while (in.next(','));
+				in.expect('}');
+			}
+			while (in.next(','));
+			in.expect('}');
+		}
+		in.end();
+		return new MappedDefinitions(mapper, buffer, names, Arrays.copyOf(ranges, names.size() * 2));
+	}
+
+	/**
+	 * @return The index, or null if missing, unreadable or not for this version of the file
+	 */
+	private static MappedDefinitions readIndex(ObjectMapper mapper, ByteBuffer buffer, Path indexFile, long size, long modified)
+	{
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != size || in.readLong() != modified)
+			{
+				return null;
+			}
+			final int count = in.readInt();
+			final List<String> names = new ArrayList<>(count);
+			final int[] ranges = new int[count * 2];
+			for (int idx = 0; idx < count; idx++)
+			{
+				names.add(in.readUTF());
+				ranges[idx * 2] = in.readInt();
+				ranges[idx * 2 + 1] = in.readInt();
+				if (ranges[idx * 2] < 0 || ranges[idx * 2] > ranges[idx * 2 + 1] || ranges[idx * 2 + 1] > size)
+				{
+					return null;
+				}
+			}
+			return new MappedDefinitions(mapper, buffer, names, ranges);
+		}
+		catch (IOException | RuntimeException exc)
+		{
+			return null;
+		}
+	}
+
+	private void writeIndex(Path indexFile, long size, long modified) throws IOException
+	{
+		final Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(size);
+			out.writeLong(modified);
+			out.writeInt(names.size());
+			for (int idx = 0; idx < names.size(); idx++)
+			{
+				out.writeUTF(names.get(idx));
+				out.writeInt(ranges[idx * 2]);
+				out.writeInt(ranges[idx * 2 + 1]);
+			}
+		}
+		Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Finds where values start and end, checking no more of the syntax than needed for that
+	 */
+	private static final class Scanner
+	{
+		private final ObjectMapper mapper;
+		private final ByteBuffer buffer;
+		private final int limit;
+		private int position;
+
+		private Scanner(ObjectMapper mapper, ByteBuffer buffer)
+		{
+			this.mapper = mapper;
+			this.buffer = buffer;
+			this.limit = buffer.limit();
+
+			// A byte order mark
+			if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF)
+			{
+				position = 3;
+			}
+		}
+
+		private int skipWhitespace()
+		{
+			while (position < limit)
+			{
+				final byte b = buffer.get(position);
+				if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+				{
+					break;
+				}
+				position++;
+			}
+			return position;
+		}
+
+		private int peek()
+		{
+			skipWhitespace();
+			return position < limit ? buffer.get(position) : -1;
+		}
+
+		private boolean next(char c)
+		{
+			if (peek() == c)
+			{
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) throws JsonParseException
+		{
+			if (! next(c))
+			{
+				throw error("expected '" + c + "'");
+			}
+		}
+
+		private void end() throws JsonParseException
+		{
+			if (peek() != -1)
+			{
+				throw error("expected the end of the file");
+			}
+		}
+
+		private String string() throws IOException
+		{
+			final int start = skipWhitespace();
+			expect('"');
+			boolean escaped = false;
+			while (true)
+			{
+				final byte b = at(position++);
+				if (b == '\\')
+				{
+					escaped = true;
+					position++;
+				}
+				else if (b == '"')
+				{
+					break;
+				}
+			}
+
+			final byte[] bytes = new byte[position - start];
+			final ByteBuffer string = buffer.duplicate();
+			((Buffer) string).position(start);
+			string.get(bytes);
+			return escaped ? mapper.readTree(bytes).textValue() : new String(bytes, 1, bytes.length - 2, StandardCharsets.UTF_8);
+		}
+
+		private void skipValue() throws IOException
+		{
+			final int c = peek();
+			if (c == '"')
+			{
+				string();
+			}
+			else if (c == '{' || c == '[')
+			{
+				int depth = 0;
+				do
+				{
+					final byte b = at(position);
+					if (b == '"')
+					{
+						string();
+						continue;
+					}
+					if (b == '{' || b == '[')
+					{
+						depth++;
+					}
+					else if (b == '}' || b == ']')
+					{
+						depth--;
+					}
+					position++;
+				}
+				while (depth > 0);
+			}
+			else
+			{
+				final int start = position;
+				while (position < limit && "{}[],: \t\n\r\"".indexOf(buffer.get(position)) < 0)
+				{
+					position++;
+				}
+				if (position == start)
+				{
+					throw error("expected a value");
+				}
+			}
+		}
+
+		private byte at(int idx) throws JsonParseException
+		{
+			if (idx >= limit)
+			{
+				throw error("unexpected end of the file");
+			}
+			return buffer.get(idx);
+		}
+
+		private JsonParseException error(String message)
+		{
+			return new JsonParseException(message, new JsonLocation(null, position, -1, -1));
+		}
+	}
+}
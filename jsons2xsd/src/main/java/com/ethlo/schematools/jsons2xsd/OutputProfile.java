@@ -0,0 +1,28 @@
+package com.ethlo.schematools.jsons2xsd;
+
+/**
+ * How the text of an XSD is laid out, see {@link Jsons2XsdConverter#withOutputProfile(OutputProfile)}
+ * and {@link XmlUtil#write(org.w3c.dom.Node, java.io.Writer, OutputProfile)}
+ *
+ * @author mha
+ */
+public enum OutputProfile
+{
+	/**
+	 * Nested elements indented by 2 spaces, as always written before
+	 */
+	PRETTY,
+
+	/**
+	 * Without whitespace between the elements, which grows with the nesting and can be most of a deeply nested XSD
+	 */
+	COMPACT,
+
+	/**
+	 * As {@link #COMPACT}, without the XML declaration, with the namespace declarations before
+	 * the attributes, the default namespace first and the others by prefix, the attributes by
+	 * name, and elements without children written as a start and an end tag. Equal XSDs are
+	 * then equal bytes, whatever wrote them, in the manner of Canonical XML.
+	 */
+	CANONICAL
+}
@@ -0,0 +1,131 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders the definitions of a schema on the pool of the context, if any, each into a
+ * {@link XsdFragment} of its own, then writes the fragments in the order of the definitions.
+ * <p>
+ * Every definition is rendered with a {@link ConversionContext#fork()} of the context, joined
+ * back in the same order, so the output, the warnings and the counts are those of rendering
+ * the definitions one after another. A failure is thrown once the definitions before it are
+ * written, as it would have been without the pool.
+ *
+ * @author mha
+ */
+final class ParallelDefinitions
+{
+	private ParallelDefinitions()
+	{
+	}
+
+	/**
+	 * Render the definitions 0 to <code>count</code> with <code>renderer</code> to <code>out</code>
+	 */
+	static void render(ConversionContext ctx, XsdOutput out, int count, Renderer renderer)
+	{
+		if (ctx.pool == null || count < 2)
+		{
+			for (int idx = 0; idx < count; idx++)
+			{
+				renderer.render(ctx, out, idx);
+			}
+			return;
+		}
+
+		final Job job = new Job(renderer, count);
+		for (int idx = 0; idx < count; idx++)
+		{
+			job.contexts[idx] = ctx.fork();
+			job.fragments[idx] = new XsdFragment();
+		}
+		ctx.pool.invoke(new RenderTask(job, 0, count));
+
+		for (int idx = 0; idx < count; idx++)
+		{
+			if (job.failures[idx] != null)
+			{
+				throw job.failures[idx];
+			}
+			ctx.join(job.contexts[idx]);
+			job.fragments[idx].writeTo(out);
+		}
+	}
+
+	/**
+	 * @return The indexes set in <code>set</code>, in order
+	 */
+	static int[] indexes(BitSet set)
+	{
+		final int[] indexes = new int[set.cardinality()];
+		int count = 0;
+		for (int idx = set.nextSetBit(0); idx >= 0; idx = set.nextSetBit(idx + 1))
+		{
+			indexes[count++] = idx;
+		}
+		return indexes;
+	}
+
+	/**
+	 * Writes the complexType of the definition at an index
+	 */
+	static abstract class Renderer
+	{
+		abstract void render(ConversionContext ctx, XsdOutput out, int idx);
+	}
+
+	private static final class Job
+	{
+		private final Renderer renderer;
+		private final ConversionContext[] contexts;
+		private final XsdFragment[] fragments;
+		private final RuntimeException[] failures;
+
+		private Job(Renderer renderer, int count)
+		{
+			this.renderer = renderer;
+			this.contexts = new ConversionContext[count];
+			this.fragments = new XsdFragment[count];
+			this.failures = new RuntimeException[count];
+		}
+	}
+
+	private static final class RenderTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+		private final int from;
+		private final int to;
+
+		RenderTask(Job job, int from, int to)
+		{
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				try
+				{
+					job.renderer.render(job.contexts[from], job.fragments[from], from);
+				}
+				catch (RuntimeException exc)
+				{
+					// Thrown in order by the caller, which is visible to it once invoke returns
+					job.failures[from] = exc;
+				}
+			}
+			else
+			{
+				final int middle = (from + to) >>> 1;
+				invokeAll(new RenderTask(job, from, middle), new RenderTask(job, middle, to));
+			}
+		}
+	}
+}
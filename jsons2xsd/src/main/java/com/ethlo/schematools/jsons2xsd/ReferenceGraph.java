@@ -0,0 +1,135 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The <code>$ref</code>s between the definitions of a {@link DefinitionsRegistry}, to find
+ * the definitions a schema needs, directly or through other definitions.
+ * <p>
+ * Every <code>$ref</code> to <code>#/definitions/</code> anywhere in a definition counts,
+ * also under keywords the converters do not render. References to definitions not in the
+ * registry are left out. The references of a definition are found when it is first reached,
+ * so definitions that are never reached are never looked at.
+ *
+ * @author mha
+ */
+final class ReferenceGraph
+{
+	private static final String PREFIX = "#/definitions/";
+
+	private final DefinitionsRegistry definitions;
+
+	/**
+	 * The definitions referenced by each definition, by position in the registry
+	 */
+	private final AtomicReferenceArray<int[]> references;
+
+	ReferenceGraph(DefinitionsRegistry definitions)
+	{
+		this.definitions = definitions;
+		this.references = new AtomicReferenceArray<>(definitions.size());
+	}
+
+	/**
+	 * @return The positions of the definitions reachable from <code>schema</code>, which are in the order of the file when iterated
+	 */
+	BitSet reachable(JsonNode schema)
+	{
+		final BitSet reachable = new BitSet(references.length());
+		final Deque<int[]> pending = new ArrayDeque<>();
+		pending.push(referencesOf(schema));
+		while (! pending.isEmpty())
+		{
+			for (int idx : pending.pop())
+			{
+				if (! reachable.get(idx))
+				{
+					reachable.set(idx);
+					pending.push(references(idx));
+				}
+			}
+		}
+		return reachable;
+	}
+
+	/**
+	 * @return The definitions referenced directly by the definition at <code>idx</code>, by position in the registry
+	 */
+	int[] referencesOf(int idx)
+	{
+		return references(idx).clone();
+	}
+
+	private int[] references(int idx)
+	{
+		int[] found = references.get(idx);
+		if (found == null)
+		{
+			// Found at most a few times when first reached concurrently, which does no harm
+			found = referencesOf(definitions.get(idx));
+			references.set(idx, found);
+		}
+		return found;
+	}
+
+	/**
+	 * @return The definitions referenced anywhere in <code>schema</code>, each once
+	 */
+	int[] referencesOf(JsonNode schema)
+	{
+		int[] found = new int[4];
+		int count = 0;
+		final BitSet seen = new BitSet();
+		final Deque<JsonNode> stack = new ArrayDeque<>();
+		stack.push(schema);
+		while (! stack.isEmpty())
+		{
+			final JsonNode node = stack.pop();
+			if (node.isObject())
+			{
+				final Iterator<Entry<String, JsonNode>> fieldIter = node.fields();
+				while (fieldIter.hasNext())
+				{
+					final Entry<String, JsonNode> entry = fieldIter.next();
+					final JsonNode val = entry.getValue();
+					if (val.isContainerNode())
+					{
+						stack.push(val);
+					}
+					else if ("$ref".equals(entry.getKey()) && val.isTextual() && val.textValue().startsWith(PREFIX))
+					{
+						final int idx = definitions.indexOf(val.textValue().substring(PREFIX.length()));
+						if (idx >= 0 && ! seen.get(idx))
+						{
+							seen.set(idx);
+							if (count == found.length)
+							{
+								found = Arrays.copyOf(found, count * 2);
+							}
+							found[count++] = idx;
+						}
+					}
+				}
+			}
+			else
+			{
+				for (JsonNode child : node)
+				{
+					if (child.isContainerNode())
+					{
+						stack.push(child);
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+}
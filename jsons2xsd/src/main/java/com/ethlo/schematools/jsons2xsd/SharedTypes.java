@@ -0,0 +1,317 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Records a whole schema, and writes it with every anonymous type that occurs more than once
+ * replaced by a reference to a single named, global type of the same shape.
+ * <p>
+ * Every element gets a shape number as soon as it ends, from its name, its attributes and the
+ * shape numbers of its children, so equal subtrees get equal numbers without ever being compared
+ * beyond one level. This takes time and memory linear in the size of the schema. A type is shared
+ * when it would still be written more than once with the types around it shared.
+ * <p>
+ * A shared type is named after the element it was first found in, with a <code>Type</code>
+ * suffix and a number if needed to keep the global names unique, and goes at the end of the
+ * schema. Its references use the prefix declared on the schema element for the target namespace.
+ *
+ * @author mha
+ */
+final class SharedTypes implements XsdOutput
+{
+	private final Map<Shape, Integer> shapes = new HashMap<>();
+	private final List<Shape> shapesById = new ArrayList<>();
+	private final Deque<Node> open = new ArrayDeque<>();
+	private Node root;
+
+	// Anonymous types by shape, in the order they are first found
+	private final Map<Integer, List<Node>> types = new LinkedHashMap<>();
+
+	// Names of the shapes written as global types
+	private Map<Integer, String> shared;
+	private String prefix;
+
+	@Override
+	public void startElement(String name)
+	{
+		final Node node = new Node(name, open.peek());
+		if (node.parent != null)
+		{
+			node.parent.children.add(node);
+		}
+		else
+		{
+			root = node;
+		}
+		open.push(node);
+	}
+
+	@Override
+	public void attribute(String name, String value)
+	{
+		open.peek().attributes.add(name);
+		open.peek().attributes.add(value);
+	}
+
+	@Override
+	public void namespace(String prefix, String namespaceUri)
+	{
+		open.peek().namespaces.add(prefix);
+		open.peek().namespaces.add(namespaceUri);
+	}
+
+	@Override
+	public void endElement()
+	{
+		final Node node = open.pop();
+		final int[] children = new int[node.children.size()];
+		for (int i = 0; i < children.length; i++)
+		{
+			children[i] = node.children.get(i).shape;
+		}
+		final Shape shape = new Shape(node.name, node.attributes.toArray(new String[0]), node.namespaces.toArray(new String[0]), children);
+		Integer id = shapes.get(shape);
+		if (id == null)
+		{
+			id = shapes.size();
+			shapes.put(shape, id);
+			shapesById.add(shape);
+		}
+		node.shape = id;
+
+		if (isAnonymousType(node))
+		{
+			List<Node> usages = types.get(id);
+			if (usages == null)
+			{
+				usages = new ArrayList<>();
+				types.put(id, usages);
+			}
+			usages.add(node);
+		}
+	}
+
+	/**
+	 * Write the recorded schema to <code>out</code>, sharing the types used more than once
+	 */
+	void writeTo(XsdOutput out)
+	{
+		Assert.isTrue(root != null && open.isEmpty(), "schema is not complete");
+		prefix = root.namespaces.isEmpty() ? null : root.namespaces.get(0);
+		shared = nameSharedTypes();
+
+		// The shared types go last, and may in turn refer to other shared types
+		final Iterator<Integer> globals = shared.keySet().iterator();
+		final Deque<Frame> stack = new ArrayDeque<>();
+		start(out, root, null);
+		stack.push(new Frame(root));
+		while (! stack.isEmpty())
+		{
+			final Frame current = stack.peek();
+			if (current.index < current.node.children.size())
+			{
+				final Node child = current.node.children.get(current.index++);
+				if (! isShared(child))
+				{
+					start(out, child, null);
+					stack.push(new Frame(child));
+				}
+			}
+			else if (current.node == root && globals.hasNext())
+			{
+				final Integer shape = globals.next();
+				final Node type = types.get(shape).get(0);
+				start(out, type, shared.get(shape));
+				stack.push(new Frame(type));
+			}
+			else
+			{
+				out.endElement();
+				stack.pop();
+			}
+		}
+	}
+
+	private Map<Integer, String> nameSharedTypes()
+	{
+		final Set<String> names = new HashSet<>();
+		for (Node child : root.children)
+		{
+			final String name = child.attribute("name");
+			if (name != null)
+			{
+				names.add(name);
+			}
+		}
+
+		final int[] usages = usages();
+		final Map<Integer, String> shared = new LinkedHashMap<>();
+		for (Entry<Integer, List<Node>> entry : types.entrySet())
+		{
+			if (usages[entry.getKey()] > 1)
+			{
+				final String element = entry.getValue().get(0).parent.attribute("name");
+				final String base = (element == null || element.isEmpty() ? "Anonymous" : Character.toUpperCase(element.charAt(0)) + element.substring(1)) + "Type";
+				String name = base;
+				for (int i = 2; ! names.add(name); i++)
+				{
+					name = base + i;
+				}
+				shared.put(entry.getKey(), name);
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * Count how often each shape is written. A type that is shared is written once, and so is
+	 * everything in it, however often it is used. Children end before their parents, so they
+	 * have lower shape numbers, and every shape is done before its children.
+	 */
+	private int[] usages()
+	{
+		final int[] usages = new int[shapesById.size()];
+		usages[root.shape] = 1;
+		for (int id = usages.length - 1; id >= 0; id--)
+		{
+			final int written = types.containsKey(id) ? Math.min(usages[id], 1) : usages[id];
+			for (int child : shapesById.get(id).children)
+			{
+				usages[child] += written;
+			}
+		}
+		return usages;
+	}
+
+	/**
+	 * Start <code>node</code>, with the given name for a global type, or with a reference to the shared type of its anonymous type
+	 */
+	private void start(XsdOutput out, Node node, String name)
+	{
+		out.startElement(node.name);
+		if (name != null)
+		{
+			out.attribute("name", name);
+		}
+		for (int i = 0; i < node.namespaces.size(); i += 2)
+		{
+			out.namespace(node.namespaces.get(i), node.namespaces.get(i + 1));
+		}
+		for (int i = 0; i < node.attributes.size(); i += 2)
+		{
+			out.attribute(node.attributes.get(i), node.attributes.get(i + 1));
+		}
+		for (Node child : node.children)
+		{
+			if (isShared(child))
+			{
+				final String type = shared.get(child.shape);
+				out.attribute("type", prefix != null ? prefix + ":" + type : type);
+			}
+		}
+	}
+
+	private boolean isShared(Node node)
+	{
+		return isAnonymousType(node) && shared.containsKey(node.shape);
+	}
+
+	private static boolean isAnonymousType(Node node)
+	{
+		return ("complexType".equals(node.name) || "simpleType".equals(node.name))
+			&& node.parent != null && "element".equals(node.parent.name)
+			&& node.attribute("name") == null;
+	}
+
+	private static final class Node
+	{
+		private final String name;
+		private final Node parent;
+		private final List<String> attributes = new ArrayList<>(4);
+		private final List<String> namespaces = new ArrayList<>(0);
+		private final List<Node> children = new ArrayList<>(2);
+		private int shape;
+
+		private Node(String name, Node parent)
+		{
+			this.name = name;
+			this.parent = parent;
+		}
+
+		private String attribute(String name)
+		{
+			for (int i = 0; i < attributes.size(); i += 2)
+			{
+				if (attributes.get(i).equals(name))
+				{
+					return attributes.get(i + 1);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * An element, with its children by shape
+	 */
+	private static final class Shape
+	{
+		private final String name;
+		private final String[] attributes;
+		private final String[] namespaces;
+		private final int[] children;
+		private final int hash;
+
+		private Shape(String name, String[] attributes, String[] namespaces, int[] children)
+		{
+			this.name = name;
+			this.attributes = attributes;
+			this.namespaces = namespaces;
+			this.children = children;
+			this.hash = ((name.hashCode() * 31 + Arrays.hashCode(attributes)) * 31 + Arrays.hashCode(namespaces)) * 31 + Arrays.hashCode(children);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (! (obj instanceof Shape))
+			{
+				return false;
+			}
+			final Shape other = (Shape) obj;
+			return hash == other.hash && name.equals(other.name) && Arrays.equals(attributes, other.attributes)
+				&& Arrays.equals(namespaces, other.namespaces) && Arrays.equals(children, other.children);
+		}
+	}
+
+	/**
+	 * Position in the children of a node being written
+	 */
+	private static final class Frame
+	{
+		private final Node node;
+		private int index;
+
+		private Frame(Node node)
+		{
+			this.node = node;
+		}
+	}
+}
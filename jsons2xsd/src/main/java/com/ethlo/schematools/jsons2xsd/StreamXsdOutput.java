@@ -0,0 +1,276 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.xml.XMLConstants;
+
+/**
+ * Streams the XSD to a {@link Writer} as it is produced, without building a DOM.
+ * <p>
+ * Only the start tag of the current element is buffered, so memory use does not depend
+ * on the size of the output. With {@link OutputProfile#PRETTY} the output is the same as
+ * {@link XmlUtil#asXmlString(org.w3c.dom.Node)}: attributes are sorted, elements without
+ * children are written as empty elements and nested elements are indented by 2 spaces. The other
+ * profiles leave out the whitespace, and are written as described by {@link OutputProfile}.
+ * <p>
+ * The markup is written here rather than by an <code>XMLStreamWriter</code>, which writes tabs
+ * and line breaks in attribute values as they are. Parsers read those back as spaces, so they
+ * are written as character references, as the DOM serializer does.
+ * 
+ * @author mha
+ */
+final class StreamXsdOutput implements XsdOutput
+{
+	private static final int INDENT_AMOUNT = 2;
+	
+	private final Writer writer;
+	private final OutputProfile profile;
+	private final Map<String, String> pendingAttributes = new TreeMap<>();
+	private final Map<String, String> pendingNamespaces = new TreeMap<>();
+	private final Deque<String> names = new ArrayDeque<>();
+	private String pendingName;
+	private int depth;
+	private boolean rootWritten;
+	private char[] indent = newIndent(32);
+	
+	/**
+	 * @param writer Written to through a buffer, flushed once the root element is ended
+	 */
+	StreamXsdOutput(Writer writer, OutputProfile profile)
+	{
+		Assert.notNull(profile, "profile cannot be null");
+		this.writer = new BufferedWriter(writer);
+		this.profile = profile;
+	}
+	
+	@Override
+	public void startElement(String name)
+	{
+		try
+		{
+			if (depth == 0)
+			{
+				if (profile != OutputProfile.CANONICAL)
+				{
+					writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+				}
+			}
+			else
+			{
+				if (pendingName != null)
+				{
+					writePending(false);
+				}
+				writeIndent(depth);
+			}
+			pendingName = name;
+			depth++;
+		}
+		catch (IOException exc)
+		{
+			throw new WriteException(exc);
+		}
+	}
+
+	@Override
+	public void attribute(String name, String value)
+	{
+		Assert.notNull(pendingName, "Attributes must be written before child elements");
+		pendingAttributes.put(name, value);
+	}
+
+	@Override
+	public void namespace(String prefix, String namespaceUri)
+	{
+		Assert.notNull(pendingName, "Namespaces must be written before child elements");
+		pendingNamespaces.put(prefix, namespaceUri);
+	}
+
+	@Override
+	public void endElement()
+	{
+		Assert.isTrue(depth > 0, "No element to end");
+		try
+		{
+			depth--;
+			if (pendingName != null)
+			{
+				writePending(true);
+			}
+			else
+			{
+				writeIndent(depth);
+				writeEndTag(names.pop());
+			}
+			
+			if (depth == 0)
+			{
+				if (profile == OutputProfile.PRETTY)
+				{
+					writer.write('\n');
+				}
+				writer.flush();
+			}
+		}
+		catch (IOException exc)
+		{
+			throw new WriteException(exc);
+		}
+	}
+	
+	private void writePending(boolean empty) throws IOException
+	{
+		final boolean canonical = profile == OutputProfile.CANONICAL;
+		writer.write('<');
+		writer.write(pendingName);
+		
+		// The default namespace goes first in canonical form, and last as written by the DOM serializer
+		if (canonical && ! rootWritten)
+		{
+			writeAttribute(XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			rootWritten = true;
+		}
+		
+		for (Entry<String, String> ns : pendingNamespaces.entrySet())
+		{
+			writeAttribute(XMLConstants.XMLNS_ATTRIBUTE + ":" + ns.getKey(), ns.getValue());
+		}
+		
+		for (Entry<String, String> attr : pendingAttributes.entrySet())
+		{
+			writeAttribute(attr.getKey(), attr.getValue());
+		}
+		
+		if (! rootWritten)
+		{
+			writeAttribute(XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			rootWritten = true;
+		}
+		
+		if (! empty)
+		{
+			writer.write('>');
+			names.push(pendingName);
+		}
+		else if (canonical)
+		{
+			writer.write('>');
+			writeEndTag(pendingName);
+		}
+		else
+		{
+			writer.write("/>");
+		}
+		
+		pendingName = null;
+		pendingAttributes.clear();
+		pendingNamespaces.clear();
+	}
+	
+	private void writeEndTag(String name) throws IOException
+	{
+		writer.write("</");
+		writer.write(name);
+		writer.write('>');
+	}
+	
+	private void writeAttribute(String name, String value) throws IOException
+	{
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\"");
+		escape(writer, value);
+		writer.write('"');
+	}
+	
+	/**
+	 * Write an attribute value with the characters escaped as the DOM serializer does,
+	 * the whitespace other than spaces as character references so that it reads back as written
+	 */
+	private static void escape(Writer writer, String value) throws IOException
+	{
+		int start = 0;
+		for (int idx = 0; idx < value.length(); idx++)
+		{
+			final String escaped;
+			switch (value.charAt(idx))
+			{
+				case '&':
+					escaped = "&amp;";
+					break;
+				case '<':
+					escaped = "&lt;";
+					break;
+				case '>':
+					escaped = "&gt;";
+					break;
+				case '"':
+					escaped = "&quot;";
+					break;
+				case '\t':
+					escaped = "&#9;";
+					break;
+				case '\n':
+					escaped = "&#10;";
+					break;
+				case '\r':
+					escaped = "&#13;";
+					break;
+				default:
+					continue;
+			}
+			writer.write(value, start, idx - start);
+			writer.write(escaped);
+			start = idx + 1;
+		}
+		writer.write(value, start, value.length() - start);
+	}
+	
+	private void writeIndent(int level) throws IOException
+	{
+		if (profile != OutputProfile.PRETTY)
+		{
+			return;
+		}
+		final int length = 1 + level * INDENT_AMOUNT;
+		if (length > indent.length)
+		{
+			indent = newIndent(length * 2);
+		}
+		writer.write(indent, 0, length);
+	}
+	
+	private static char[] newIndent(int length)
+	{
+		final char[] chars = new char[length];
+		Arrays.fill(chars, ' ');
+		chars[0] = '\n';
+		return chars;
+	}
+	
+	/**
+	 * Carries a failure to write through the converters, which do not declare checked exceptions
+	 */
+	static final class WriteException extends RuntimeException
+	{
+		private static final long serialVersionUID = 3716218733458471532L;
+
+		WriteException(IOException cause)
+		{
+			super(cause.getMessage(), cause);
+		}
+		
+		IOException asIOException()
+		{
+			return (IOException) getCause();
+		}
+	}
+}
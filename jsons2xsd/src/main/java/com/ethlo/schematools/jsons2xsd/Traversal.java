@@ -0,0 +1,107 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Walks a schema as a list of steps rather than by recursion, so its nesting depth is limited
+ * by the heap rather than the stack of the thread.
+ * <p>
+ * A step writes what it can and schedules, with {@link #then(Step)}, the steps for the nodes
+ * below it and for what follows them. Those run in the order scheduled, right after the step
+ * and before the steps it was scheduled with, which is the order of the recursive calls they
+ * replace. The output is therefore the same.
+ *
+ * @author mha
+ */
+final class Traversal
+{
+	final ConversionContext ctx;
+	final XsdOutput out;
+
+	private final Deque<Step> steps = new ArrayDeque<>();
+
+	/**
+	 * Scheduled by the current step, pushed once it is done
+	 */
+	private final List<Step> scheduled = new ArrayList<>();
+
+	Traversal(ConversionContext ctx, XsdOutput out)
+	{
+		this.ctx = ctx;
+		this.out = out;
+	}
+
+	/**
+	 * Run <code>step</code> after the current one, and after those it already scheduled
+	 */
+	void then(Step step)
+	{
+		scheduled.add(step);
+	}
+
+	/**
+	 * Run the steps scheduled so far, and those they schedule, until none are left
+	 */
+	void run()
+	{
+		push();
+		while (! steps.isEmpty())
+		{
+			steps.pop().run(this);
+			push();
+		}
+	}
+
+	private void push()
+	{
+		for (int idx = scheduled.size() - 1; idx >= 0; idx--)
+		{
+			steps.push(scheduled.get(idx));
+		}
+		scheduled.clear();
+	}
+
+	/**
+	 * Ends the last <code>count</code> elements started
+	 */
+	static Step end(final int count)
+	{
+		return new Step()
+		{
+			@Override
+			void run(Traversal traversal)
+			{
+				for (int idx = 0; idx < count; idx++)
+				{
+					traversal.out.endElement();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Leaves the last <code>count</code> levels entered, see {@link ConversionContext#leave(int)}
+	 */
+	static Step leave(final int count)
+	{
+		return new Step()
+		{
+			@Override
+			void run(Traversal traversal)
+			{
+				traversal.ctx.leave(count);
+			}
+		};
+	}
+
+	/**
+	 * Part of the conversion, like the element of one property
+	 */
+	static abstract class Step
+	{
+		abstract void run(Traversal traversal);
+	}
+}
@@ -0,0 +1,256 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Maps JSON schema <code>type</code> and <code>format</code> pairs to XSD types. Shared by all converters.
+ * <p>
+ * Instances are immutable: {@link #withFormat(String, String, String)} and the other
+ * <code>with</code> methods return a new mapper, so a mapper is configured once and can then
+ * be used by any number of threads without locking. Lookups go through the type, then the
+ * format, and do not build strings. Names are matched ignoring case, as JSON schema
+ * keywords are lower case this costs nothing for the schemas seen in practice.
+ *
+ * @author mha
+ */
+public final class TypeMapper
+{
+	/**
+	 * The mappings built in, for the JSON schema types and the formats of draft 3 and 4
+	 */
+	public static final TypeMapper DEFAULT = new TypeMapper(Collections.<String, Formats>emptyMap())
+		// Primitive types
+		.withType("string", "string")
+		.withType("object", "object")
+		.withType("array", "array")
+		.withType("number", "decimal")
+		.withType("boolean", "boolean")
+		.withType("integer", "int")
+
+		// Non-standard, often encountered in the wild
+		.withType("int", "int")
+		.withType("date-time", "dateTime")
+		.withType("time", "time")
+		.withType("date", "date")
+
+		// TODO: Support "JSON null"
+
+		// String formats
+		.withFormat("string", "uri", "anyURI")
+		.withFormat("string", "email", "string")
+		.withFormat("string", "phone", "string")
+		.withFormat("string", "date-time", "dateTime")
+		.withFormat("string", "date", "date")
+		.withFormat("string", "time", "time")
+		.withFormat("string", "utc-millisec", "long")
+		.withFormat("string", "regex", "string")
+		.withFormat("string", "color", "string")
+		.withFormat("string", "style", "string");
+
+	private static final String PATTERN_SUFFIX = ".pattern";
+
+	private final Map<String, Formats> types;
+
+	private TypeMapper(Map<String, Formats> types)
+	{
+		this.types = types;
+	}
+
+	/**
+	 * @return A mapper that maps <code>type</code> without a format to <code>xsdType</code>
+	 */
+	public TypeMapper withType(String type, String xsdType)
+	{
+		Assert.notNull(type, "type cannot be null");
+		Assert.notNull(xsdType, "xsdType cannot be null");
+		final Formats formats = formats(type);
+		return with(type, new Formats(xsdType, formats.xsdTypes, formats.patterns));
+	}
+
+	/**
+	 * @return A mapper that maps <code>type</code> with <code>format</code> to <code>xsdType</code>
+	 */
+	public TypeMapper withFormat(String type, String format, String xsdType)
+	{
+		Assert.notNull(type, "type cannot be null");
+		Assert.notNull(format, "format cannot be null");
+		Assert.notNull(xsdType, "xsdType cannot be null");
+		final Formats formats = formats(type);
+		return with(type, new Formats(formats.xsdType, put(formats.xsdTypes, format, xsdType), formats.patterns));
+	}
+
+	/**
+	 * @return A mapper that maps the string <code>format</code> to a string restricted by <code>pattern</code>,
+	 * unless the schema has a pattern of its own
+	 */
+	public TypeMapper withPattern(String format, String pattern)
+	{
+		Assert.notNull(format, "format cannot be null");
+		Assert.notNull(pattern, "pattern cannot be null");
+		final Formats formats = formats("string");
+		return with("string", new Formats(formats.xsdType, put(formats.xsdTypes, format, "string"), put(formats.patterns, format, pattern)));
+	}
+
+	/**
+	 * Add the mappings in <code>properties</code>, for instance read from a file:
+	 * <pre>
+	 * integer = int
+	 * integer|int64 = long
+	 * string|uuid.pattern = [0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}
+	 * </pre>
+	 * A key is a type, optionally followed by <code>|</code> and a format. Keys ending in
+	 * <code>.pattern</code> map a string format to a pattern, as {@link #withPattern(String, String)}.
+	 */
+	public TypeMapper with(Properties properties)
+	{
+		TypeMapper mapper = this;
+		for (Entry<String, String> entry : toSortedMap(properties).entrySet())
+		{
+			final String key = entry.getKey();
+			final String value = entry.getValue().trim();
+			final boolean isPattern = key.endsWith(PATTERN_SUFFIX);
+			final String name = isPattern ? key.substring(0, key.length() - PATTERN_SUFFIX.length()) : key;
+			final int separator = name.indexOf('|');
+			final String type = (separator >= 0 ? name.substring(0, separator) : name).trim();
+			final String format = separator >= 0 ? name.substring(separator + 1).trim() : null;
+			if (isPattern)
+			{
+				Assert.isTrue("string".equals(type) && format != null, "A pattern can only be given for a string format: " + key);
+				mapper = mapper.withPattern(format, value);
+			}
+			else if (format != null)
+			{
+				mapper = mapper.withFormat(type, format, value);
+			}
+			else
+			{
+				mapper = mapper.withType(type, value);
+			}
+		}
+		return mapper;
+	}
+
+	/**
+	 * @return The XSD type for <code>type</code> with the optional <code>format</code>, or null if not mapped
+	 */
+	public String getXsdType(String type, String format)
+	{
+		final Formats formats = lookup(types, type);
+		if (formats == null)
+		{
+			return null;
+		}
+		return format != null ? lookup(formats.xsdTypes, format) : formats.xsdType;
+	}
+
+	/**
+	 * @return The pattern strings of <code>format</code> are restricted to, or null if none
+	 */
+	public String getPattern(String type, String format)
+	{
+		if (type == null || format == null)
+		{
+			return null;
+		}
+		final Formats formats = lookup(types, type);
+		return formats != null ? lookup(formats.patterns, format) : null;
+	}
+
+	/**
+	 * @return The pattern of a string schema: its own, or else the one of its format
+	 */
+	String getPattern(JsonNode schema)
+	{
+		final String pattern = schema.path("pattern").textValue();
+		return pattern != null ? pattern : getPattern(schema.path("type").textValue(), schema.path("format").textValue());
+	}
+
+	/**
+	 * @return The mappings, sorted. Two mappers with the same description map the same.
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (Entry<String, Formats> type : new TreeMap<>(types).entrySet())
+		{
+			final Formats formats = type.getValue();
+			if (formats.xsdType != null)
+			{
+				sb.append(type.getKey()).append('=').append(formats.xsdType).append('\n');
+			}
+			for (Entry<String, String> format : new TreeMap<>(formats.xsdTypes).entrySet())
+			{
+				sb.append(type.getKey()).append('|').append(format.getKey()).append('=').append(format.getValue()).append('\n');
+			}
+			for (Entry<String, String> pattern : new TreeMap<>(formats.patterns).entrySet())
+			{
+				sb.append(type.getKey()).append('|').append(pattern.getKey()).append(PATTERN_SUFFIX).append('=').append(pattern.getValue()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private Formats formats(String type)
+	{
+		final Formats formats = types.get(type.toLowerCase());
+		return formats != null ? formats : new Formats(null, Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap());
+	}
+
+	private TypeMapper with(String type, Formats formats)
+	{
+		final Map<String, Formats> copy = new HashMap<>(types);
+		copy.put(type.toLowerCase(), formats);
+		return new TypeMapper(Collections.unmodifiableMap(copy));
+	}
+
+	private static Map<String, String> put(Map<String, String> map, String key, String value)
+	{
+		final Map<String, String> copy = new HashMap<>(map);
+		copy.put(key.toLowerCase(), value);
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * The keys are lower case, so only names that are not need to be converted
+	 */
+	private static <T> T lookup(Map<String, T> map, String name)
+	{
+		final T value = map.get(name);
+		return value != null ? value : map.get(name.toLowerCase());
+	}
+
+	private static Map<String, String> toSortedMap(Properties properties)
+	{
+		final Map<String, String> map = new TreeMap<>();
+		for (String key : properties.stringPropertyNames())
+		{
+			map.put(key, properties.getProperty(key));
+		}
+		return map;
+	}
+
+	/**
+	 * The mappings of a single type
+	 */
+	private static final class Formats
+	{
+		private final String xsdType;
+		private final Map<String, String> xsdTypes;
+		private final Map<String, String> patterns;
+
+		private Formats(String xsdType, Map<String, String> xsdTypes, Map<String, String> patterns)
+		{
+			this.xsdType = xsdType;
+			this.xsdTypes = xsdTypes;
+			this.patterns = patterns;
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * XML helpers.
+ * <p>
+ * The JAXP factories are looked up once. They are not guaranteed to be thread-safe, so
+ * each thread gets its own builder and transformers, created from them once and reused.
+ * <p>
+ * Documents are written indented unless another {@link OutputProfile} is given.
+ * 
+ * @author mha
+ *
+ */
+public class XmlUtil
+{
+	private static final DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+	private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	
+	static
+	{
+		builderFactory.setNamespaceAware(true);
+	}
+	
+	private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>()
+	{
+		@Override
+		protected DocumentBuilder initialValue()
+		{
+			return newBuilder();
+		}
+	};
+	
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>()
+	{
+		@Override
+		protected Transformer initialValue()
+		{
+			final Transformer transformer = newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+			return transformer;
+		}
+	};
+	
+	private static final ThreadLocal<Transformer> compactTransformers = new ThreadLocal<Transformer>()
+	{
+		@Override
+		protected Transformer initialValue()
+		{
+			final Transformer transformer = newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "no");
+			return transformer;
+		}
+	};
+	
+	private static Transformer newTransformer()
+	{
+		synchronized (transformerFactory)
+		{
+			try
+			{
+				return transformerFactory.newTransformer();
+			}
+			catch (TransformerConfigurationException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	public static String asXmlString(Node node) throws IOException
+	{
+		return asXmlString(node, OutputProfile.PRETTY);
+	}
+	
+	public static String asXmlString(Node node, OutputProfile profile) throws IOException
+	{
+		final StringWriter stringWriter = new StringWriter();
+		write(node, stringWriter, profile);
+		return stringWriter.getBuffer().toString();
+	}
+	
+	/**
+	 * Write the node indented, as {@link #asXmlString(Node)} does, to a stream the caller closes
+	 */
+	public static void write(Node node, Writer writer) throws IOException
+	{
+		write(node, writer, OutputProfile.PRETTY);
+	}
+	
+	/**
+	 * Write the node indented, as {@link #asXmlString(Node)} does, encoded in UTF-8, to a stream the caller closes
+	 */
+	public static void write(Node node, OutputStream out) throws IOException
+	{
+		write(node, out, OutputProfile.PRETTY);
+	}
+	
+	/**
+	 * Write the node laid out by <code>profile</code>, to a stream the caller closes.
+	 * {@link OutputProfile#CANONICAL} is only available for XSDs, which hold elements of the
+	 * XML Schema namespace and their attributes only.
+	 */
+	public static void write(Node node, Writer writer, OutputProfile profile) throws IOException
+	{
+		if (profile == OutputProfile.CANONICAL)
+		{
+			writeCanonical(node, writer);
+		}
+		else
+		{
+			write(node, new StreamResult(writer), profile);
+		}
+	}
+	
+	/**
+	 * Write the node laid out by <code>profile</code>, encoded in UTF-8, to a stream the caller closes
+	 */
+	public static void write(Node node, OutputStream out, OutputProfile profile) throws IOException
+	{
+		if (profile == OutputProfile.CANONICAL)
+		{
+			final Writer writer = Jsons2XsdConverter.newWriter(out);
+			writeCanonical(node, writer);
+			writer.flush();
+		}
+		else
+		{
+			write(node, new StreamResult(out), profile);
+		}
+	}
+	
+	private static void write(Node node, Result result, OutputProfile profile) throws IOException
+	{
+		Assert.notNull(profile, "profile cannot be null");
+		final Source source = new DOMSource(node);
+		try
+		{
+			(profile == OutputProfile.PRETTY ? transformers : compactTransformers).get().transform(source, result);
+		}
+		catch (TransformerException exc)
+		{
+			throw new IOException(exc.getMessage(), exc);
+		}
+	}
+	
+	/**
+	 * Write the elements below and including <code>node</code>, or its document element, as they
+	 * are written by the converters, walking the tree without recursion
+	 */
+	private static void writeCanonical(Node node, Writer writer) throws IOException
+	{
+		final Node root = node instanceof Document ? ((Document) node).getDocumentElement() : node;
+		Assert.isTrue(root instanceof Element, "Only elements can be written in canonical form");
+		final XsdOutput out = new StreamXsdOutput(writer, OutputProfile.CANONICAL);
+		try
+		{
+			Node current = root;
+			startCanonical(out, current);
+			Node child = nextElement(current.getFirstChild());
+			while (true)
+			{
+				if (child != null)
+				{
+					current = child;
+					startCanonical(out, current);
+					child = nextElement(current.getFirstChild());
+					continue;
+				}
+				out.endElement();
+				if (current == root)
+				{
+					break;
+				}
+				child = nextElement(current.getNextSibling());
+				current = current.getParentNode();
+			}
+		}
+		catch (StreamXsdOutput.WriteException exc)
+		{
+			throw exc.asIOException();
+		}
+	}
+	
+	private static void startCanonical(XsdOutput out, Node element)
+	{
+		Assert.isTrue(XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(element.getNamespaceURI()), "Only XSD elements can be written in canonical form, not " + element.getNodeName());
+		out.startElement(element.getLocalName());
+		final NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++)
+		{
+			final Attr attr = (Attr) attributes.item(i);
+			final String name = attr.getName();
+			if (name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+			{
+				out.namespace(name.substring(XMLConstants.XMLNS_ATTRIBUTE.length() + 1), attr.getValue());
+			}
+			else if (! name.equals(XMLConstants.XMLNS_ATTRIBUTE))
+			{
+				// The default namespace is always the XML Schema namespace, written by the output
+				out.attribute(name, attr.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * @return The first element from <code>node</code> on, skipping whitespace and comments
+	 */
+	private static Node nextElement(Node node)
+	{
+		for (; node != null; node = node.getNextSibling())
+		{
+			switch (node.getNodeType())
+			{
+				case Node.ELEMENT_NODE:
+					return node;
+				case Node.COMMENT_NODE:
+					break;
+				case Node.TEXT_NODE:
+					Assert.isTrue(node.getNodeValue().trim().isEmpty(), "Only elements can be written in canonical form, not text");
+					break;
+				default:
+					throw new IllegalArgumentException("Only elements can be written in canonical form, not " + node.getNodeName());
+			}
+		}
+		return null;
+	}
+	
+	public static Document newDocument()
+	{
+		return pooledBuilder().newDocument();
+	}
+	
+	/**
+	 * @return A new namespace aware builder, which the caller may configure and keep
+	 */
+	public static DocumentBuilder getBuilder()
+	{
+		return newBuilder();
+	}
+	
+	/**
+	 * @return The namespace aware builder of the calling thread, reset to its initial state.
+	 * It must not be configured, kept, or handed to other threads.
+	 */
+	static DocumentBuilder pooledBuilder()
+	{
+		final DocumentBuilder builder = builders.get();
+		builder.reset();
+		return builder;
+	}
+	
+	private static DocumentBuilder newBuilder()
+	{
+		synchronized (builderFactory)
+		{
+			try
+			{
+				return builderFactory.newDocumentBuilder();
+			}
+			catch (ParserConfigurationException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	public static Document loadDocument(Reader reader) throws SAXException, IOException
+	{
+		return pooledBuilder().parse(new InputSource(reader));
+	}
+
+	public static Element createXsdElement(Node element, String name)
+	{
+		Assert.notNull(element, "element should never be null");
+		final Document doc = element.getOwnerDocument() != null ? element.getOwnerDocument() : ((Document)element);
+		final Element retVal = doc.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, name);
+		element.appendChild(retVal);
+		return retVal;
+	}
+
+	public static Attr createXsdAttr(Node element, String name)
+	{
+		Assert.notNull(element, "element should never be null");
+		final Document doc = element.getOwnerDocument() != null ? element.getOwnerDocument() : ((Document)element);
+		final Attr retVal = doc.createAttributeNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, name);
+
+		element.appendChild(retVal);
+		return retVal;
+	}
+
+
+	public static Element createXsdReference(Node element, String name)
+	{
+		Assert.notNull(element, "element should never be null");
+		final Document doc = element.getOwnerDocument() != null ? element.getOwnerDocument() : ((Document)element);
+		final Element retVal = doc.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, name);
+		element.appendChild(retVal);
+		return retVal;
+	}
+	
+	public static Element prependXsdElement(Node element, String name)
+	{
+		Assert.notNull(element, "element should never be null");
+		final Document doc = element.getOwnerDocument() != null ? element.getOwnerDocument() : ((Document)element);
+		final Element retVal = doc.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, name);
+		final Node first = element.getFirstChild();
+		if (first != null)
+		{
+			element.insertBefore(retVal, first);
+		}
+		else
+		{
+			element.appendChild(retVal);
+		}
+		return retVal;
+	}
+	
+}
+
+
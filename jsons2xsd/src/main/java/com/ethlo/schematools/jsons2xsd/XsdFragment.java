@@ -0,0 +1,100 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import java.util.Arrays;
+
+/**
+ * Records what is written to it, so that it can be written again to any other
+ * {@link XsdOutput}. Used to keep rendered parts of a schema between conversions.
+ * 
+ * @author mha
+ */
+final class XsdFragment implements XsdOutput
+{
+	private static final byte START = 0;
+	private static final byte ATTRIBUTE = 1;
+	private static final byte NAMESPACE = 2;
+	private static final byte END = 3;
+	
+	private byte[] events = new byte[16];
+	private String[] values = new String[16];
+	private int eventCount;
+	private int valueCount;
+	
+	@Override
+	public void startElement(String name)
+	{
+		add(START, name, null);
+	}
+
+	@Override
+	public void attribute(String name, String value)
+	{
+		add(ATTRIBUTE, name, value);
+	}
+
+	@Override
+	public void namespace(String prefix, String namespaceUri)
+	{
+		add(NAMESPACE, prefix, namespaceUri);
+	}
+
+	@Override
+	public void endElement()
+	{
+		add(END, null, null);
+	}
+	
+	/**
+	 * Write everything recorded to <code>out</code>, in the same order
+	 */
+	void writeTo(XsdOutput out)
+	{
+		int value = 0;
+		for (int i = 0; i < eventCount; i++)
+		{
+			switch (events[i])
+			{
+				case START:
+					out.startElement(values[value++]);
+					break;
+					
+				case ATTRIBUTE:
+					out.attribute(values[value], values[value + 1]);
+					value += 2;
+					break;
+					
+				case NAMESPACE:
+					out.namespace(values[value], values[value + 1]);
+					value += 2;
+					break;
+					
+				default:
+					out.endElement();
+					break;
+			}
+		}
+	}
+	
+	private void add(byte event, String first, String second)
+	{
+		if (eventCount == events.length)
+		{
+			events = Arrays.copyOf(events, eventCount * 2);
+		}
+		events[eventCount++] = event;
+		
+		if (valueCount + 2 > values.length)
+		{
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		if (event == START)
+		{
+			values[valueCount++] = first;
+		}
+		else if (event != END)
+		{
+			values[valueCount++] = first;
+			values[valueCount++] = second;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.ethlo.schematools.jsons2xsd;
+
+/**
+ * Target the converters write the XSD to, one element at a time.
+ * <p>
+ * All attributes and namespace declarations of an element must be written before
+ * its first child element is started.
+ * 
+ * @author mha
+ */
+interface XsdOutput
+{
+	/**
+	 * Start an element in the XML Schema namespace, as a child of the current element
+	 */
+	void startElement(String name);
+	
+	void attribute(String name, String value);
+	
+	void namespace(String prefix, String namespaceUri);
+	
+	void endElement();
+}
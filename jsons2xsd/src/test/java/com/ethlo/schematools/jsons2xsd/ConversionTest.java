@@ -1,14 +1,25 @@
 package com.ethlo.schematools.jsons2xsd;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import javax.xml.XMLConstants;
 import javax.xml.transform.TransformerException;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import com.ethlo.schematools.jsons2xsd.Jsons2Xsd;
 import com.ethlo.schematools.jsons2xsd.XmlUtil;
@@ -60,6 +71,42 @@ public class ConversionTest
 		}
 	}
 
+	@Test
+	public void testConversionOneOf() throws IOException
+	{
+		final Document doc = doConvert("/schema/oneof.json");
+		final NodeList choices = doc.getElementsByTagNameNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "choice");
+		assertEquals(1, choices.getLength());
+		
+		final List<String> names = new ArrayList<>();
+		for (Node child = choices.item(0).getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			names.add(((Element) child).getAttribute("name"));
+		}
+		assertEquals(Arrays.asList("creditcard", "dummyElement2", "dummyElement3"), names);
+	}
+
+	@Test
+	public void testShortDescriptionNames() throws IOException
+	{
+		final String schema = "{\"type\":\"object\",\"properties\":{"
+			+ "\"payment\":{\"type\":\"object\",\"oneOf\":[{\"type\":\"string\",\"description\":\"x\"},{\"type\":\"string\",\"description\":\" \\n \"}]},"
+			+ "\"lines\":{\"type\":\"array\",\"items\":{\"type\":\"string\",\"description\":\"\\\"y\\\"\"}}}}";
+		final Document doc = Jsons2Xsd.convert(new StringReader(schema), "http://ethlo.com/schema/contacts-1.0.xsd", OuterWrapping.TYPE, "A");
+		final NodeList elements = doc.getElementsByTagNameNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "element");
+		final List<String> names = new ArrayList<>();
+		for (int idx = 0; idx < elements.getLength(); idx++)
+		{
+			names.add(((Element) elements.item(idx)).getAttribute("name"));
+		}
+		// Named after a description of a single character, and without whitespace or quotes
+		assertEquals(Arrays.asList("payment", "x", "dummyElement2", "lines", "y"), names);
+		assertEquals("a", ((Element) doc.getDocumentElement().getFirstChild()).getAttribute("name"));
+		assertEquals("aB", Jsons2Xsd.handleCamelCasing("aB"));
+		assertEquals("URL", Jsons2Xsd.handleCamelCasing("URL"));
+		assertEquals("", Jsons2Xsd.handleCamelCasing(""));
+	}
+
 	private Document doConvert(String file) throws IOException
 	{
 		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file)))
@@ -0,0 +1,94 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdSingleFile.OuterWrapping;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class ConversionTestSingleFile
+{
+
+	@Test
+	public void testConversionCMTS() throws IOException, TransformerException
+	{
+
+			final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json"));
+			final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json"));
+
+
+			final Document doc = Jsons2XsdSingleFile.convert(r, def, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS");
+			System.out.println(XmlUtil.asXmlString(doc.getDocumentElement()));
+
+	}
+
+	@Test
+	public void testConversionWithRegistry() throws IOException
+	{
+		final DefinitionsRegistry registry;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			registry = DefinitionsRegistry.load(def);
+		}
+
+		for (String file : new String[]{"/schema/account.json", "/schema/cmts.json", "/schema/account.json"})
+		{
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file));
+				 final Reader r2 = new InputStreamReader(getClass().getResourceAsStream(file));
+				 final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+			{
+				final Document expected = Jsons2XsdSingleFile.convert(r, def, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS");
+				final Document actual = Jsons2XsdSingleFile.convert(r2, registry, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS");
+				assertEquals(XmlUtil.asXmlString(expected.getDocumentElement()), XmlUtil.asXmlString(actual.getDocumentElement()));
+			}
+		}
+	}
+
+	@Test
+	public void testReferencesThroughDefinitionsAreWritten() throws IOException
+	{
+		final DefinitionsRegistry registry;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			registry = DefinitionsRegistry.load(def);
+		}
+
+		for (String file : new String[]{"/schema/account.json", "/schema/cmts.json"})
+		{
+			final String xsd;
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file)))
+			{
+				xsd = XmlUtil.asXmlString(Jsons2XsdSingleFile.convert(r, registry, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS").getDocumentElement());
+			}
+
+			final Set<String> written = new HashSet<>();
+			final Matcher types = Pattern.compile("complexType name=\"([^\"]+)\"").matcher(xsd);
+			while (types.find())
+			{
+				written.add(types.group(1));
+			}
+			final Matcher references = Pattern.compile("type=\"cmts:([^\"]+)\"").matcher(xsd);
+			while (references.find())
+			{
+				assertTrue(file + " references " + references.group(1), written.contains(references.group(1)));
+			}
+			// Only what is reachable from the schema
+			assertTrue(file, written.size() < registry.size());
+		}
+	}
+}
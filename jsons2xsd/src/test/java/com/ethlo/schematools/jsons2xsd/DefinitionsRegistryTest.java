@@ -0,0 +1,90 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author mha
+ *
+ */
+public class DefinitionsRegistryTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMapped() throws IOException
+	{
+		final Path file = folder.getRoot().toPath().resolve("definitions.json");
+		try (final InputStream in = getClass().getResourceAsStream("/schema/definitions.json"))
+		{
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		final DefinitionsRegistry loaded;
+		try (final Reader def = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			loaded = DefinitionsRegistry.load(def);
+		}
+
+		final DefinitionsRegistry mapped = DefinitionsRegistry.map(file);
+		assertTrue(Files.exists(folder.getRoot().toPath().resolve("definitions.json.index")));
+		assertEquals(convert(loaded), convert(mapped));
+
+		// From the index this time
+		final DefinitionsRegistry indexed = DefinitionsRegistry.map(file);
+		assertEquals(loaded.getNames(), indexed.getNames());
+		for (int idx = 0; idx < loaded.size(); idx++)
+		{
+			assertEquals(loaded.get(idx), indexed.get(idx));
+		}
+		assertEquals(loaded.get("Link"), indexed.get("Link"));
+	}
+
+	@Test
+	public void testMappedIndexFollowsTheFile() throws IOException
+	{
+		final Path file = folder.getRoot().toPath().resolve("definitions.json");
+		final Path index = folder.getRoot().toPath().resolve("definitions.idx");
+		Files.write(file, "{\"definitions\":{\"A\":{\"type\":\"object\"},\"B\":{\"type\":\"string\"}}}".getBytes(StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList("A", "B"), DefinitionsRegistry.map(file, index).getNames());
+
+		Files.write(file, "{\"title\":\"x\",\"definitions\":{\"C\":{\"type\":\"object\",\"properties\":{}},\"A\":[1,2],\"C\":{}}}".getBytes(StandardCharsets.UTF_8));
+		final DefinitionsRegistry mapped = DefinitionsRegistry.map(file, index);
+		final DefinitionsRegistry loaded = DefinitionsRegistry.load(new StringReader(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+		assertEquals(loaded.getNames(), mapped.getNames());
+		assertEquals(loaded.get("C"), mapped.get("C"));
+		assertEquals(loaded.get("A"), mapped.get("A"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMappedInvalid() throws IOException
+	{
+		final Path file = folder.getRoot().toPath().resolve("definitions.json");
+		Files.write(file, "{\"definitions\":{\"A\":{\"type\":\"object\"}".getBytes(StandardCharsets.UTF_8));
+		DefinitionsRegistry.map(file, null);
+	}
+
+	private String convert(DefinitionsRegistry definitions) throws IOException
+	{
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+		{
+			return XmlUtil.asXmlString(Jsons2XsdSingleFile.convert(r, definitions, "http://cableapi.cablelabs.com/schemas/v1/CMTS", Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS").getDocumentElement());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class Jsons2XsdBatchTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final Path schemaDirectory = schemaDirectory();
+	
+	@Test
+	public void testBatchReportsFailuresAndContinues() throws IOException
+	{
+		final List<Path> schemas = Jsons2XsdBatch.findSchemas(schemaDirectory, "*.json");
+		assertTrue(schemas.contains(Paths.get("abcd.json")));
+		assertFalse(schemas.contains(Paths.get("small.jsons")));
+		
+		final Path output = folder.getRoot().toPath();
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		final Jsons2XsdBatch.Result result;
+		try
+		{
+			result = new Jsons2XsdBatch(new Jsons2XsdConverter(), pool).convert(schemaDirectory, schemas, output, Jsons2XsdBatch.naming("http://ethlo.com/schema/{name}", "{name}Type"), Jsons2Xsd.OuterWrapping.ELEMENT);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		
+		// account.json, cmts.json and definitions.json cannot be converted without shared definitions
+		assertEquals(Arrays.asList(Paths.get("account.json"), Paths.get("cmts.json"), Paths.get("definitions.json")), Arrays.asList(result.getFailures().keySet().toArray()));
+		assertEquals(schemas.size() - 3, result.getConverted());
+		assertFalse(Files.exists(output.resolve("account.xsd")));
+		
+		final String expected;
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/abcd.json")))
+		{
+			expected = XmlUtil.asXmlString(Jsons2Xsd.convert(r, "http://ethlo.com/schema/abcd", Jsons2Xsd.OuterWrapping.ELEMENT, "abcdType").getDocumentElement());
+		}
+		assertEquals(expected, new String(Files.readAllBytes(output.resolve("abcd.xsd")), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testCliWithDefinitions() throws IOException
+	{
+		final Path output = folder.getRoot().toPath();
+		final ByteArrayOutputStream err = new ByteArrayOutputStream();
+		final int exitCode = Jsons2XsdCli.run(new String[]{"batch", "--namespace", "http://cableapi.cablelabs.com/schemas/v1/CMTS", "--name", "CMTS", "--glob", "account.json",
+			"--definitions", schemaDirectory.resolve("definitions.json").toString(), "--threads", "2", schemaDirectory.toString(), output.toString()}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+		assertEquals(err.toString(), 0, exitCode);
+		assertTrue(Files.size(output.resolve("account.xsd")) > 0);
+		
+		assertEquals(2, Jsons2XsdCli.run(new String[]{"batch", schemaDirectory.toString(), output.toString()}, System.out, new PrintStream(new ByteArrayOutputStream())));
+	}
+	
+	@Test
+	public void testCompressedOutputs() throws IOException
+	{
+		final List<Path> schemas = Arrays.asList(Paths.get("abcd.json"), Paths.get("oneof.json"), Paths.get("cmts.json"));
+		final Jsons2XsdBatch.Naming naming = Jsons2XsdBatch.naming("http://ethlo.com/schema/{name}", "{name}Type");
+		final Path plain = folder.newFolder("plain").toPath();
+		final Path gzipped = folder.newFolder("gzipped").toPath();
+		final Path archive = folder.getRoot().toPath().resolve("xsd.zip");
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			final Jsons2XsdBatch batch = new Jsons2XsdBatch(new Jsons2XsdConverter().withOutputProfile(OutputProfile.COMPACT), pool);
+			batch.convert(schemaDirectory, schemas, plain, naming, Jsons2Xsd.OuterWrapping.ELEMENT);
+			try (final Jsons2XsdBatch.Output output = Jsons2XsdBatch.gzip(gzipped))
+			{
+				assertEquals(2, batch.convert(schemaDirectory, schemas, output, naming, Jsons2Xsd.OuterWrapping.ELEMENT).getConverted());
+			}
+			try (final Jsons2XsdBatch.Output output = Jsons2XsdBatch.zip(archive))
+			{
+				final Jsons2XsdBatch.Result result = batch.convert(schemaDirectory, schemas, output, naming, Jsons2Xsd.OuterWrapping.ELEMENT);
+				assertEquals(Collections.singleton(Paths.get("cmts.json")), result.getFailures().keySet());
+				assertTrue(result.getBytesWritten() > 0);
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		
+		assertFalse(Files.exists(gzipped.resolve("cmts.xsd.gz")));
+		for (String xsd : new String[]{"abcd.xsd", "oneof.xsd"})
+		{
+			try (final InputStream in = new GZIPInputStream(Files.newInputStream(gzipped.resolve(xsd + ".gz"))))
+			{
+				assertEquals(xsd, new String(Files.readAllBytes(plain.resolve(xsd)), StandardCharsets.UTF_8), read(in));
+			}
+		}
+		
+		// Entries in the order converted, the failed schema left out
+		final Map<String, String> entries = new HashMap<>();
+		try (final ZipInputStream in = new ZipInputStream(Files.newInputStream(archive)))
+		{
+			for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry())
+			{
+				entries.put(entry.getName(), read(in));
+			}
+		}
+		assertEquals(2, entries.size());
+		assertEquals(new String(Files.readAllBytes(plain.resolve("abcd.xsd")), StandardCharsets.UTF_8), entries.get("abcd.xsd"));
+		assertEquals(new String(Files.readAllBytes(plain.resolve("oneof.xsd")), StandardCharsets.UTF_8), entries.get("oneof.xsd"));
+		
+		final Path cliArchive = folder.getRoot().toPath().resolve("cli.zip");
+		assertEquals(0, Jsons2XsdCli.run(new String[]{"batch", "--namespace", "http://ethlo.com/schema/{name}", "--name", "{name}Type", "--glob", "abcd.json", "--profile", "COMPACT", "--compress", "zip",
+			schemaDirectory.toString(), cliArchive.toString()}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream())));
+		try (final ZipInputStream in = new ZipInputStream(Files.newInputStream(cliArchive)))
+		{
+			assertEquals("abcd.xsd", in.getNextEntry().getName());
+			assertEquals(entries.get("abcd.xsd"), read(in));
+		}
+	}
+	
+	private static String read(InputStream in) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		for (int count = in.read(buffer); count >= 0; count = in.read(buffer))
+		{
+			out.write(buffer, 0, count);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private Path schemaDirectory()
+	{
+		try
+		{
+			return Paths.get(getClass().getResource("/schema").toURI());
+		}
+		catch (URISyntaxException exc)
+		{
+			throw new IllegalStateException(exc);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class Jsons2XsdCacheTest
+{
+	private static final String NS = "http://cableapi.cablelabs.com/schemas/v1/CMTS";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	
+	@Test
+	public void testHitIgnoresWhitespace() throws IOException
+	{
+		final Jsons2XsdCache cache = new Jsons2XsdCache(converter, 1024 * 1024);
+		final byte[] schema = read("/schema/abcd.json");
+		final byte[] compact = new String(schema, StandardCharsets.UTF_8).replaceAll("\\s+(?=([^\"]*\"[^\"]*\")*[^\"]*$)", "").getBytes(StandardCharsets.UTF_8);
+		
+		final byte[] expected = convert(cache, schema, "abcdType");
+		assertEquals(XmlUtil.asXmlString(converter.convert(reader(schema), NS, Jsons2Xsd.OuterWrapping.ELEMENT, "abcdType").getDocumentElement()), new String(expected, StandardCharsets.UTF_8));
+		assertArrayEquals(expected, convert(cache, compact, "abcdType"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		
+		// Any other parameter is another entry
+		assertFalse(new String(convert(cache, schema, "otherType"), StandardCharsets.UTF_8).contains("abcdType"));
+		assertEquals(2, cache.getMisses());
+	}
+	
+	@Test
+	public void testDirectoryIsSharedAndBounded() throws IOException
+	{
+		final Path directory = folder.getRoot().toPath().resolve("cache");
+		final byte[] schema = read("/schema/account.json");
+		final byte[] definitions = read("/schema/definitions.json");
+		
+		final Jsons2XsdCache first = new Jsons2XsdCache(converter, 0, directory, 1024 * 1024);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		first.convert(schema, definitions, expected, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		assertEquals(1, count(directory));
+		
+		final Jsons2XsdCache second = new Jsons2XsdCache(converter, 0, directory, 1024 * 1024);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		second.convert(schema, definitions, actual, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+		assertEquals(1, second.getHits());
+		
+		// Room for a single entry only, so the earlier one is evicted
+		final Jsons2XsdCache small = new Jsons2XsdCache(converter, 0, directory, expected.size());
+		small.convert(schema, definitions, new ByteArrayOutputStream(), NS, Jsons2XsdSingleFile.OuterWrapping.TYPE, "CMTS");
+		assertEquals(1, count(directory));
+		second.convert(schema, definitions, new ByteArrayOutputStream(), NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		assertEquals(1, second.getMisses());
+		assertTrue(count(directory) <= 2);
+	}
+	
+	@Test
+	public void testProfilesAreSeparateEntries() throws IOException
+	{
+		final Path directory = folder.getRoot().toPath().resolve("cache");
+		final byte[] schema = read("/schema/abcd.json");
+		
+		final Jsons2XsdCache pretty = new Jsons2XsdCache(converter, 0, directory, 1024 * 1024);
+		final byte[] indented = convert(pretty, schema, "abcdType");
+		
+		final Jsons2XsdCache compact = new Jsons2XsdCache(converter.withOutputProfile(OutputProfile.COMPACT), 0, directory, 1024 * 1024);
+		final byte[] unindented = convert(compact, schema, "abcdType");
+		assertEquals(1, pretty.getMisses());
+		assertEquals(1, compact.getMisses());
+		assertEquals(0, compact.getHits());
+		assertFalse(Arrays.equals(indented, unindented));
+		assertFalse(new String(unindented, StandardCharsets.UTF_8).contains("\n"));
+		assertEquals(2, count(directory));
+	}
+	
+	private byte[] convert(Jsons2XsdCache cache, byte[] schema, String name) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cache.convert(schema, out, NS, Jsons2Xsd.OuterWrapping.ELEMENT, name);
+		return out.toByteArray();
+	}
+	
+	private static Reader reader(byte[] bytes)
+	{
+		return new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+	}
+	
+	private byte[] read(String resource) throws IOException
+	{
+		try (final InputStream in = getClass().getResourceAsStream(resource))
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+	
+	private static int count(Path directory) throws IOException
+	{
+		int count = 0;
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.xsd"))
+		{
+			for (@SuppressWarnings("unused") Path file : stream)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+}
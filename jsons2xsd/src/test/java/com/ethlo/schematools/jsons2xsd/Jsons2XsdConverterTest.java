@@ -0,0 +1,506 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ethlo.schematools.jsons2xsd.Jsons2XsdSingleFile.OuterWrapping;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class Jsons2XsdConverterTest
+{
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testNoStateBetweenConversions() throws IOException
+	{
+		final String first = convert("/schema/abcd.json");
+		convert("/schema/account.json");
+		final String second = convert("/schema/abcd.json");
+		assertEquals(first, second);
+		assertFalse(second.contains("cmts:Link"));
+	}
+	
+	@Test
+	public void testConcurrentConversions() throws Exception
+	{
+		final String expected = convert("/schema/account.json");
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			final List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++)
+			{
+				results.add(executor.submit(new Callable<String>()
+				{
+					@Override
+					public String call() throws Exception
+					{
+						return convert("/schema/account.json");
+					}
+				}));
+			}
+			for (Future<String> result : results)
+			{
+				assertEquals(expected, result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testStreamingMatchesDocument() throws IOException
+	{
+		final DefinitionsRegistry definitions;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			definitions = converter.loadDefinitions(def);
+		}
+		
+		final StringWriter streamed = new StringWriter();
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+		{
+			converter.convert(r, definitions, streamed, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS");
+		}
+		assertEquals(convert("/schema/account.json"), streamed.toString());
+		
+		final ByteArrayOutputStream streamedBytes = new ByteArrayOutputStream();
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/abcd.json")))
+		{
+			converter.convert(r, streamedBytes, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.TYPE, "mySpecialType");
+		}
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/abcd.json")))
+		{
+			final String expected = XmlUtil.asXmlString(converter.convert(r, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.TYPE, "mySpecialType").getDocumentElement());
+			assertEquals(expected, new String(streamedBytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+	
+	@Test
+	public void testPathMatchesTree() throws IOException, URISyntaxException
+	{
+		for (String file : new String[]{"/schema/abcd.json", "/schema/oneof.json", "/schema/late-keywords.json"})
+		{
+			final String expected;
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file)))
+			{
+				expected = XmlUtil.asXmlString(converter.convert(r, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement());
+			}
+			
+			final Path path = Paths.get(getClass().getResource(file).toURI());
+			final StringWriter streamed = new StringWriter();
+			converter.convert(path, streamed, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order");
+			assertEquals(file, expected, streamed.toString());
+		}
+	}
+
+	@Test
+	public void testWhitespaceInValuesMatchesDocument() throws IOException
+	{
+		final String schema = "{\"type\":\"object\",\"properties\":{"
+			+ "\"kind\":{\"enum\":[\"tab\\there\",\"line\\nbreak\",\"cr\\rcr\"]},"
+			+ "\"code\":{\"type\":\"string\",\"pattern\":\"[a-z]\\n\\t\\r[&<>\\\"]\"}}}";
+		final String expected = XmlUtil.asXmlString(converter.convert(new StringReader(schema), "urn:ws", Jsons2Xsd.OuterWrapping.ELEMENT, "Values").getDocumentElement());
+		assertTrue(expected.contains("value=\"line&#10;break\""));
+		assertTrue(expected.contains("value=\"[a-z]&#10;&#9;&#13;[&amp;&lt;&gt;&quot;]\""));
+
+		final StringWriter streamed = new StringWriter();
+		converter.convert(new StringReader(schema), streamed, "urn:ws", Jsons2Xsd.OuterWrapping.ELEMENT, "Values");
+		assertEquals(expected, streamed.toString());
+
+		final Path path = folder.getRoot().toPath().resolve("values.json");
+		Files.write(path, schema.getBytes(StandardCharsets.UTF_8));
+		final StringWriter fromPath = new StringWriter();
+		converter.convert(path, fromPath, "urn:ws", Jsons2Xsd.OuterWrapping.ELEMENT, "Values");
+		assertEquals(expected, fromPath.toString());
+	}
+
+	@Test
+	public void testBytesMatchReader() throws IOException, URISyntaxException
+	{
+		final String ns = "http://ethlo.com/schema/contacts-1.0.xsd";
+		final Path path = Paths.get(getClass().getResource("/schema/abcd.json").toURI());
+		final byte[] bytes = Files.readAllBytes(path);
+		final String expected;
+		try (final Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+		{
+			expected = XmlUtil.asXmlString(converter.convert(r, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement());
+		}
+		
+		try (final InputStream in = Files.newInputStream(path))
+		{
+			assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(in, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		}
+		assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(bytes, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(path, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		
+		// A slice of a larger array, and a buffer without one
+		final byte[] padded = new byte[bytes.length + 8];
+		Arrays.fill(padded, (byte) '#');
+		System.arraycopy(bytes, 0, padded, 4, bytes.length);
+		final ByteBuffer slice = ByteBuffer.wrap(padded, 4, bytes.length).slice();
+		assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(slice, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		assertEquals(0, slice.position());
+		final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(direct, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		assertEquals(bytes.length, direct.remaining());
+		
+		// Large enough to be mapped
+		final Path large = folder.getRoot().toPath().resolve("large.json");
+		final byte[] whitespace = new byte[2 << 20];
+		Arrays.fill(whitespace, (byte) ' ');
+		Files.write(large, bytes);
+		Files.write(large, whitespace, StandardOpenOption.APPEND);
+		assertEquals(expected, XmlUtil.asXmlString(Jsons2Xsd.convert(large, ns, Jsons2Xsd.OuterWrapping.ELEMENT, "Order").getDocumentElement()));
+		
+		final Path schema = Paths.get(getClass().getResource("/schema/account.json").toURI());
+		final Path definitions = Paths.get(getClass().getResource("/schema/definitions.json").toURI());
+		final String account = convert("/schema/account.json");
+		assertEquals(account, XmlUtil.asXmlString(Jsons2XsdSingleFile.convert(schema, definitions, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS").getDocumentElement()));
+		assertEquals(account, XmlUtil.asXmlString(Jsons2XsdSingleFile.convert(Files.readAllBytes(schema), converter.loadDefinitions(Files.readAllBytes(definitions)), "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS").getDocumentElement()));
+	}
+	
+	@Test
+	public void testDiagnostics() throws IOException, URISyntaxException
+	{
+		final ConversionDiagnostics diagnostics = new ConversionDiagnostics();
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/oneof.json")))
+		{
+			converter.convert(r, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", diagnostics);
+		}
+		assertEquals(3, diagnostics.getDiagnostics().size());
+		final ConversionDiagnostics.Diagnostic second = diagnostics.getDiagnostics().get(1);
+		assertEquals(ConversionDiagnostics.Kind.CHOICE_ELEMENT_NAME, second.getKind());
+		assertEquals("/properties/payment/oneOf/1", second.getPointer());
+		assertEquals("dummyElement2", second.getPlaceholder());
+
+		final Path path = Paths.get(getClass().getResource("/schema/oneof.json").toURI());
+		final ConversionDiagnostics bytes = new ConversionDiagnostics();
+		converter.convert(Files.readAllBytes(path), "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", bytes);
+		assertEquals(diagnostics.toString(), bytes.toString());
+		final ConversionDiagnostics buffer = new ConversionDiagnostics();
+		converter.convert(ByteBuffer.wrap(Files.readAllBytes(path)), "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", buffer);
+		assertEquals(diagnostics.toString(), buffer.toString());
+		final ConversionDiagnostics stream = new ConversionDiagnostics();
+		try (final InputStream in = Files.newInputStream(path))
+		{
+			converter.convert(in, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", stream);
+		}
+		assertEquals(diagnostics.toString(), stream.toString());
+
+		for (String file : new String[]{"/schema/oneof.json", "/schema/late-keywords.json"})
+		{
+			final ConversionDiagnostics tree = new ConversionDiagnostics();
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file)))
+			{
+				converter.convert(r, new StringWriter(), "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", tree);
+			}
+			final ConversionDiagnostics streamed = new ConversionDiagnostics();
+			converter.convert(Paths.get(getClass().getResource(file).toURI()), new StringWriter(), "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order", streamed);
+			assertFalse(file, tree.isEmpty());
+			assertEquals(file, tree.toString(), streamed.toString());
+		}
+	}
+	
+	@Test
+	public void testListener() throws IOException, URISyntaxException
+	{
+		final List<ConversionMetrics> conversions = new ArrayList<>();
+		final Jsons2XsdConverter measured = new Jsons2XsdConverter(new ObjectMapper(), TypeMapper.DEFAULT, new ConversionListener()
+		{
+			@Override
+			public void conversionCompleted(ConversionMetrics metrics)
+			{
+				conversions.add(metrics);
+			}
+		});
+		
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/oneof.json")))
+		{
+			measured.convert(r, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order");
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		measured.convert(Paths.get(getClass().getResource("/schema/oneof.json").toURI()), out, "http://ethlo.com/schema/contacts-1.0.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Order");
+		assertEquals(2, conversions.size());
+		
+		final ConversionMetrics tree = conversions.get(0);
+		final ConversionMetrics streamed = conversions.get(1);
+		assertEquals(0, tree.getOutputBytes());
+		assertEquals(out.size(), streamed.getOutputBytes());
+		assertTrue(tree.getElements() > 0);
+		assertEquals(tree.getElements(), streamed.getElements());
+		assertEquals(tree.getTypes(), streamed.getTypes());
+		assertEquals(tree.getNodes(), streamed.getNodes());
+		assertTrue(tree.getNanos(ConversionMetrics.Phase.PARSE) > 0);
+		assertTrue(tree.getNanos(ConversionMetrics.Phase.PREPARE) > 0);
+		assertEquals(0, tree.getNanos(ConversionMetrics.Phase.WRITE));
+		assertTrue(streamed.getNanos(ConversionMetrics.Phase.WRITE) > 0);
+		assertTrue(tree.getTotalNanos() >= tree.getNanos(ConversionMetrics.Phase.PARSE) + tree.getNanos(ConversionMetrics.Phase.PREPARE) + tree.getNanos(ConversionMetrics.Phase.RENDER));
+		
+		final ConversionHistogram histogram = new ConversionHistogram();
+		for (ConversionMetrics metrics : conversions)
+		{
+			histogram.conversionCompleted(metrics);
+		}
+		assertEquals(2, histogram.getCount());
+		assertTrue(histogram.getPercentile(50) >= Math.min(tree.getTotalNanos(), streamed.getTotalNanos()));
+		assertTrue(histogram.getPercentile(99) >= Math.max(tree.getTotalNanos(), streamed.getTotalNanos()));
+		assertTrue(histogram.getPercentile(99) < Math.max(tree.getTotalNanos(), streamed.getTotalNanos()) * 1.15);
+		for (long value : new long[]{0, 7, 8, 9, 1000, 123456789, Long.MAX_VALUE})
+		{
+			final int bucket = ConversionHistogram.bucket(value);
+			assertTrue(ConversionHistogram.upperBound(bucket) >= value);
+			assertTrue(bucket == 0 || ConversionHistogram.upperBound(bucket - 1) < value);
+		}
+	}
+	
+	@Test
+	public void testDeepNesting() throws Exception
+	{
+		// Objects and arrays of objects; the output, indented, grows with the square of the depth
+		final int depth = 1000;
+		final StringBuilder schema = new StringBuilder("{\"type\":\"object\",\"properties\":{");
+		for (int level = 0; level < depth; level++)
+		{
+			schema.append(level % 2 == 0 ? "\"p" + level + "\":{\"type\":\"object\",\"properties\":{" : "\"a" + level + "\":{\"type\":\"array\",\"items\":{\"type\":\"object\",\"properties\":{");
+		}
+		schema.append("\"leaf\":{\"type\":\"string\"}");
+		for (int level = depth - 1; level >= 0; level--)
+		{
+			schema.append(level % 2 == 0 ? "}}" : "}}}");
+		}
+		final String json = schema.append("}}").toString();
+		final Path file = folder.getRoot().toPath().resolve("deep.json");
+		Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+
+		// On a stack far too small to recurse that deep
+		final FutureTask<List<String>> task = new FutureTask<>(new Callable<List<String>>()
+		{
+			@Override
+			public List<String> call() throws Exception
+			{
+				final StringWriter inline = new StringWriter();
+				converter.convert(new StringReader(json), inline, "urn:deep", Jsons2Xsd.OuterWrapping.ELEMENT, "Root");
+				final StringWriter singleFile = new StringWriter();
+				converter.convert(new StringReader(json), DefinitionsRegistry.of(new ObjectMapper().createObjectNode()), singleFile, "urn:deep", OuterWrapping.ELEMENT, "Root");
+				final StringWriter definitions = new StringWriter();
+				converter.convert(new StringReader(json), definitions, "urn:deep", Jsons2XsdDefinitions.OuterWrapping.ELEMENT, "Root");
+				final StringWriter streamed = new StringWriter();
+				converter.convert(file, streamed, "urn:deep", Jsons2Xsd.OuterWrapping.ELEMENT, "Root");
+				assertEquals(inline.toString(), streamed.toString());
+				final JsonNode tree = converter.readTree(converter.newContext(), new StringReader(json));
+				assertTrue(Jsons2XsdIncremental.sameTree(tree, converter.readTree(converter.newContext(), new StringReader(json))));
+				assertFalse(Jsons2XsdIncremental.sameTree(tree, converter.readTree(converter.newContext(), new StringReader(json.replace("leaf", "leaves")))));
+				return Arrays.asList(inline.toString(), singleFile.toString(), definitions.toString(), streamed.toString());
+			}
+		});
+		final Thread thread = new Thread(null, task, "deep", 256 * 1024);
+		thread.start();
+		for (String xsd : task.get())
+		{
+			assertEquals(1, count(xsd, "name=\"leaf\""));
+			assertTrue(xsd.trim().endsWith("schema>"));
+		}
+	}
+	
+	@Test
+	public void testSharedTypes() throws Exception
+	{
+		final String schema = "{\"type\":\"object\",\"properties\":{"
+			+ "\"street\":{\"type\":\"string\",\"maxLength\":255},"
+			+ "\"city\":{\"type\":\"string\",\"maxLength\":255},"
+			+ "\"home\":{\"type\":\"object\",\"properties\":{\"line\":{\"type\":\"string\",\"maxLength\":255},\"zip\":{\"type\":\"integer\",\"minimum\":0}}},"
+			+ "\"work\":{\"type\":\"object\",\"properties\":{\"line\":{\"type\":\"string\",\"maxLength\":255},\"zip\":{\"type\":\"integer\",\"minimum\":0}}},"
+			+ "\"status\":{\"type\":\"string\",\"maxLength\":10}}}";
+		final Jsons2XsdConverter shared = converter.withSharedTypes(true);
+		
+		final StringWriter streamed = new StringWriter();
+		shared.convert(new StringReader(schema), streamed, "http://ethlo.com/schema/address.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Address");
+		final String xsd = streamed.toString();
+		assertEquals(xsd, XmlUtil.asXmlString(shared.convert(new StringReader(schema), "http://ethlo.com/schema/address.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Address").getDocumentElement()));
+		
+		// The string of the street, city and line, and the type of home and work, are written once.
+		// The zip is in the shared type only, and the status is used once, so both stay anonymous.
+		assertEquals(3, count(xsd, "<simpleType"));
+		assertEquals(2, count(xsd, "<complexType"));
+		assertFalse(xsd.contains("ZipType"));
+		assertEquals(3, count(xsd, "type=\"address:StreetType\""));
+		assertEquals(2, count(xsd, "type=\"address:HomeType\""));
+		assertTrue(xsd.contains("<complexType name=\"HomeType\">"));
+		assertTrue(xsd.contains("<simpleType name=\"StreetType\">"));
+		
+		// All references resolve
+		SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(new StringReader(xsd)));
+		
+		final StringWriter plain = new StringWriter();
+		converter.convert(new StringReader(schema), plain, "http://ethlo.com/schema/address.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Address");
+		assertEquals(7, count(plain.toString(), "<simpleType"));
+	}
+	
+	@Test
+	public void testOutputProfiles() throws IOException
+	{
+		final DefinitionsRegistry definitions;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			definitions = converter.loadDefinitions(def);
+		}
+		
+		final String pretty = convert("/schema/account.json");
+		for (OutputProfile profile : OutputProfile.values())
+		{
+			final Jsons2XsdConverter laidOut = converter.withOutputProfile(profile);
+			assertTrue(laidOut.getOutputProfile() == profile);
+			
+			final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+			{
+				laidOut.convert(r, definitions, streamed, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS");
+			}
+			final String xsd = new String(streamed.toByteArray(), StandardCharsets.UTF_8);
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+			{
+				assertEquals(profile.name(), xsd, XmlUtil.asXmlString(converter.convert(r, definitions, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS"), profile));
+			}
+			if (profile == OutputProfile.PRETTY)
+			{
+				assertEquals(pretty, xsd);
+			}
+			else
+			{
+				assertFalse(profile.name(), xsd.contains("\n"));
+				assertTrue(profile.name(), xsd.length() < pretty.length());
+				assertEquals(profile == OutputProfile.COMPACT, xsd.startsWith("<?xml"));
+			}
+		}
+	}
+	
+	@Test
+	public void testParallelDefinitions() throws IOException
+	{
+		final StringBuilder schema = new StringBuilder("{\"type\":\"object\",\"properties\":{");
+		final StringBuilder definitions = new StringBuilder("\"definitions\":{");
+		for (int idx = 0; idx < 40; idx++)
+		{
+			schema.append(idx > 0 ? "," : "").append("\"p").append(idx).append("\":{\"$ref\":\"#/definitions/Def").append(idx).append("\"}");
+			definitions.append(idx > 0 ? "," : "").append("\"Def").append(idx).append("\":{\"type\":\"object\",\"properties\":{")
+				.append("\"name\":{\"type\":\"string\",\"maxLength\":").append(idx + 1).append("},")
+				.append("\"choice\":{\"type\":\"object\",\"oneOf\":[{\"type\":\"string\"},{\"type\":\"integer\"}]}}}");
+		}
+		final String json = schema.append("},").append(definitions).append("}}").toString();
+		
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			final Jsons2XsdConverter parallel = converter.withDefinitionsPool(pool);
+			assertTrue(parallel.getDefinitionsPool() == pool);
+			
+			final ConversionDiagnostics expectedDiagnostics = new ConversionDiagnostics();
+			final StringWriter expected = new StringWriter();
+			converter.convert(new StringReader(json), expected, "http://ethlo.com/schema/defs.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Defs", expectedDiagnostics);
+			final ConversionDiagnostics actualDiagnostics = new ConversionDiagnostics();
+			final StringWriter actual = new StringWriter();
+			parallel.convert(new StringReader(json), actual, "http://ethlo.com/schema/defs.xsd", Jsons2Xsd.OuterWrapping.ELEMENT, "Defs", actualDiagnostics);
+			assertEquals(expected.toString(), actual.toString());
+			assertFalse(expectedDiagnostics.isEmpty());
+			assertEquals(expectedDiagnostics.toString(), actualDiagnostics.toString());
+			
+			final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+			final String definitionsXsd = XmlUtil.asXmlString(parallel.convert(bytes, "http://ethlo.com/schema/defs.xsd", Jsons2XsdDefinitions.OuterWrapping.ELEMENT, "Defs").getDocumentElement());
+			assertEquals(XmlUtil.asXmlString(converter.convert(bytes, "http://ethlo.com/schema/defs.xsd", Jsons2XsdDefinitions.OuterWrapping.ELEMENT, "Defs").getDocumentElement()), definitionsXsd);
+			assertTrue(definitionsXsd.contains("name=\"Def39\""));
+			
+			final DefinitionsRegistry registry;
+			try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+			{
+				registry = parallel.loadDefinitions(def);
+			}
+			try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+			{
+				assertEquals(convert("/schema/account.json"), XmlUtil.asXmlString(parallel.convert(r, registry, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS").getDocumentElement()));
+			}
+			
+			// The first failure in the order of the definitions is thrown, as without the pool
+			final String broken = json.replace("\"Def10\":{\"type\":\"object\",\"properties\"", "\"Def10\":{\"type\":\"object\",\"fields\"")
+				.replace("\"Def30\":{\"type\":\"object\",\"properties\"", "\"Def30\":{\"type\":\"object\",\"fields\"");
+			try
+			{
+				parallel.convert(broken.getBytes(StandardCharsets.UTF_8), "http://ethlo.com/schema/defs.xsd", Jsons2XsdDefinitions.OuterWrapping.ELEMENT, "Defs");
+				fail("Expected the missing properties to be reported");
+			}
+			catch (IllegalArgumentException exc)
+			{
+				assertTrue(exc.getMessage(), exc.getMessage().contains("\"Def10\""));
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	private static int count(String text, String part)
+	{
+		int count = 0;
+		for (int idx = text.indexOf(part); idx >= 0; idx = text.indexOf(part, idx + 1))
+		{
+			count++;
+		}
+		return count;
+	}
+	
+	private String convert(String file) throws IOException
+	{
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(file));
+			 final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			return XmlUtil.asXmlString(converter.convert(r, def, "http://cableapi.cablelabs.com/schemas/v1/CMTS", OuterWrapping.ELEMENT, "CMTS").getDocumentElement());
+		}
+	}
+}
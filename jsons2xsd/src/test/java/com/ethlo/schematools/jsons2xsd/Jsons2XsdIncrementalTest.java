@@ -0,0 +1,106 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class Jsons2XsdIncrementalTest
+{
+	private static final String NS = "http://cableapi.cablelabs.com/schemas/v1/CMTS";
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter(mapper);
+	
+	@Test
+	public void testOnlyChangedDefinitionsAreRendered() throws IOException
+	{
+		final JsonNode definitions = read("/schema/definitions.json");
+		final Jsons2XsdIncremental incremental = new Jsons2XsdIncremental(converter);
+		
+		assertEquals(convert(definitions), convert(incremental, definitions));
+		final int total = incremental.getRenderedCount();
+		assertTrue(total > 1);
+		
+		assertEquals(convert(definitions), convert(incremental, definitions));
+		assertEquals(0, incremental.getRenderedCount());
+		assertEquals(total, incremental.getReusedCount());
+		
+		// A new property, and a reference to a definition not written before
+		final ObjectNode changed = definitions.deepCopy();
+		final ObjectNode properties = (ObjectNode) changed.path("definitions").path("AccountSummary").path("properties");
+		properties.putObject("money").put("$ref", "#/definitions/Money");
+		final String expected = convert(changed);
+		assertTrue(expected.contains("name=\"Money\""));
+		assertEquals(expected, convert(incremental, changed));
+		assertEquals(2, incremental.getRenderedCount());
+		assertEquals(total - 1, incremental.getReusedCount());
+	}
+	
+	@Test
+	public void testReorderedPropertiesAreRendered() throws IOException
+	{
+		final JsonNode definitions = read("/schema/definitions.json");
+		final Jsons2XsdIncremental incremental = new Jsons2XsdIncremental(converter);
+		convert(incremental, definitions);
+		
+		final ObjectNode changed = definitions.deepCopy();
+		final ObjectNode summary = (ObjectNode) changed.path("definitions").path("AccountSummary");
+		final ObjectNode properties = (ObjectNode) summary.path("properties");
+		final ObjectNode reordered = summary.putObject("properties");
+		final String first = properties.fieldNames().next();
+		reordered.setAll(properties);
+		reordered.remove(first);
+		reordered.set(first, properties.get(first));
+		
+		assertEquals(convert(changed), convert(incremental, changed));
+		assertEquals(1, incremental.getRenderedCount());
+	}
+	
+	private String convert(JsonNode definitions) throws IOException
+	{
+		final StringWriter out = new StringWriter();
+		try (final Reader schema = reader("/schema/account.json"))
+		{
+			converter.convert(schema, DefinitionsRegistry.of(definitions), out, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		}
+		return out.toString();
+	}
+	
+	private String convert(Jsons2XsdIncremental incremental, JsonNode definitions) throws IOException
+	{
+		final StringWriter out = new StringWriter();
+		try (final Reader schema = reader("/schema/account.json"))
+		{
+			incremental.convert(schema, DefinitionsRegistry.of(definitions), out, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS");
+		}
+		return out.toString();
+	}
+	
+	private JsonNode read(String resource) throws IOException
+	{
+		try (final Reader r = reader(resource))
+		{
+			return mapper.readTree(r);
+		}
+	}
+	
+	private Reader reader(String resource)
+	{
+		return new InputStreamReader(getClass().getResourceAsStream(resource));
+	}
+}
@@ -0,0 +1,197 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.SchemaFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ *
+ * @author mha
+ *
+ */
+public class Jsons2XsdMultiFileTest
+{
+	private static final String NS = "http://cableapi.cablelabs.com/schemas/v1/CMTS";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPerDefinition() throws IOException, SAXException
+	{
+		final DefinitionsRegistry definitions;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			definitions = DefinitionsRegistry.load(def);
+		}
+
+		final String single;
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+		{
+			single = XmlUtil.asXmlString(Jsons2XsdSingleFile.convert(r, definitions, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS").getDocumentElement());
+		}
+
+		final Path output = folder.getRoot().toPath();
+		final List<Path> files;
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+		{
+			files = new Jsons2XsdMultiFile(new Jsons2XsdConverter(), pool).convert(r, definitions, output, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS", Jsons2XsdMultiFile.perDefinition());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		// The same types, a file each
+		final Set<String> expected = complexTypes(single);
+		assertEquals(output.resolve("CMTS.xsd"), files.get(0));
+		assertEquals(expected.size(), files.size());
+		final Set<String> written = new HashSet<>();
+		for (Path file : files)
+		{
+			written.addAll(complexTypes(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+		}
+		assertEquals(expected, written);
+
+		final String root = new String(Files.readAllBytes(files.get(0)), StandardCharsets.UTF_8);
+		assertTrue(root, root.contains("include schemaLocation=\"Link.xsd\""));
+		assertFalse(root, root.contains("complexType name=\"Link\""));
+
+		// Loading the schema pulls in the rest
+		SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(files.get(0).toFile());
+	}
+
+	@Test
+	public void testByField() throws IOException
+	{
+		final DefinitionsRegistry definitions;
+		try (final Reader def = new InputStreamReader(getClass().getResourceAsStream("/schema/definitions.json")))
+		{
+			definitions = DefinitionsRegistry.load(def);
+		}
+
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream("/schema/account.json")))
+		{
+			final List<Path> files = new Jsons2XsdMultiFile(new Jsons2XsdConverter(), pool).convert(r, definitions, folder.getRoot().toPath(), NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS", Jsons2XsdMultiFile.byField("x-xsd-group", "types"));
+			assertEquals(2, files.size());
+			assertEquals("types.xsd", files.get(1).getFileName().toString());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFileNames() throws IOException
+	{
+		final DefinitionsRegistry definitions = DefinitionsRegistry.load(new StringReader("{\"definitions\":{\"Cafe\":{\"x-xsd-group\":\"shared types\",\"type\":\"object\",\"properties\":{\"a\":{\"type\":\"string\"}}}}}"));
+		final String schema = "{\"type\":\"object\",\"properties\":{\"c\":{\"$ref\":\"#/definitions/Cafe\"}}}";
+		final Path output = folder.getRoot().toPath().resolve("out");
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try
+		{
+			final List<Path> files = new Jsons2XsdMultiFile(new Jsons2XsdConverter(), pool).convert(new StringReader(schema), definitions, output, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS", Jsons2XsdMultiFile.byField("x-xsd-group", "types"));
+			assertEquals(output.resolve("shared types.xsd"), files.get(1));
+			final String root = new String(Files.readAllBytes(files.get(0)), StandardCharsets.UTF_8);
+			assertTrue(root, root.contains("include schemaLocation=\"shared%20types.xsd\""));
+			assertEquals("Caf%C3%A9.xsd", Jsons2XsdMultiFile.uriPath("Caf\u00e9.xsd"));
+
+			// Groups are file names, not paths
+			for (final String group : new String[] {"../evil", "sub/evil", "sub\\evil", ".."})
+			{
+				try
+				{
+					new Jsons2XsdMultiFile(new Jsons2XsdConverter(), pool).convert(new StringReader(schema), definitions, output, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS", new Jsons2XsdMultiFile.Grouping()
+					{
+						@Override
+						public String getGroup(String name, JsonNode definition)
+						{
+							return group;
+						}
+					});
+					fail("Expected " + group + " to be refused");
+				}
+				catch (IllegalArgumentException expected)
+				{
+					assertTrue(expected.getMessage(), expected.getMessage().contains(group));
+				}
+			}
+			assertFalse(Files.exists(folder.getRoot().toPath().resolve("evil.xsd")));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailureOfFirstFile() throws IOException
+	{
+		final DefinitionsRegistry definitions = DefinitionsRegistry.load(new StringReader("{\"definitions\":{\"A\":{\"type\":\"string\"},\"B\":{\"type\":\"string\"}}}"));
+		final String schema = "{\"type\":\"object\",\"properties\":{\"a\":{\"$ref\":\"#/definitions/A\"},\"b\":{\"$ref\":\"#/definitions/B\"}}}";
+		final Path output = folder.getRoot().toPath();
+		Files.createDirectory(output.resolve("A.xsd"));
+		Files.createDirectory(output.resolve("B.xsd"));
+
+		// Both fail, the first one is always the one thrown
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		try
+		{
+			for (int i = 0; i < 20; i++)
+			{
+				try
+				{
+					new Jsons2XsdMultiFile(new Jsons2XsdConverter(), pool).convert(new StringReader(schema), definitions, output, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, "CMTS", Jsons2XsdMultiFile.perDefinition());
+					fail("Expected the files to fail");
+				}
+				catch (IOException expected)
+				{
+					assertTrue(expected.getMessage(), expected.getMessage().contains("A.xsd"));
+				}
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static Set<String> complexTypes(String xsd)
+	{
+		final Set<String> names = new HashSet<>();
+		final Matcher types = Pattern.compile("complexType name=\"([^\"]+)\"").matcher(xsd);
+		while (types.find())
+		{
+			names.add(types.group(1));
+		}
+		return names;
+	}
+}
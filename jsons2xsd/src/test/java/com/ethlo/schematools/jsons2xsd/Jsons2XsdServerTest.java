@@ -0,0 +1,182 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ *
+ * @author mha
+ *
+ */
+public class Jsons2XsdServerTest
+{
+	private static final String NS = "http://ethlo.com/schema/abcd.xsd";
+	private static final int THREADS = 2;
+
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	private Jsons2XsdServer server;
+
+	@Before
+	public void start() throws IOException
+	{
+		// Without a queue, and a thread to spare for the next request while the last one is still closing
+		server = new Jsons2XsdServer(converter, new InetSocketAddress("localhost", 0), THREADS, 0, null);
+		server.start();
+	}
+
+	@After
+	public void stop() throws InterruptedException
+	{
+		server.stop();
+	}
+
+	@Test
+	public void testConvert() throws IOException
+	{
+		final String schema = read("/schema/abcd.json");
+		final StringWriter expected = new StringWriter();
+		converter.convert(new StringReader(schema), expected, NS, Jsons2Xsd.OuterWrapping.ELEMENT, "Abcd");
+
+		final HttpURLConnection connection = post("/convert?namespace=" + NS + "&name=Abcd", schema);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(expected.toString(), body(connection.getInputStream()));
+
+		assertEquals(400, post("/convert?namespace=" + NS, schema).getResponseCode());
+		assertEquals(400, post("/convert?namespace=" + NS + "&name=Abcd&wrapping=NONE", schema).getResponseCode());
+		assertEquals(400, post("/convert?namespace=" + NS + "&name=Abcd", "{").getResponseCode());
+
+		final HttpURLConnection get = (HttpURLConnection) url("/convert").openConnection();
+		assertEquals(405, get.getResponseCode());
+	}
+
+	@Test
+	public void testWarningHeaders() throws IOException
+	{
+		// A pointer with a line break, and a placeholder beyond Latin-1
+		final String schema = "{\"type\":\"object\",\"properties\":{\"a\\r\\nb\":{\"type\":\"object\",\"oneOf\":[{\"type\":\"string\",\"description\":\"\u540d\u524d+100%\"}]}}}";
+		final ConversionDiagnostics expected = new ConversionDiagnostics();
+		converter.convert(new StringReader(schema), new StringWriter(), NS, Jsons2Xsd.OuterWrapping.ELEMENT, "Abcd", expected);
+		assertEquals(1, expected.getDiagnostics().size());
+
+		final HttpURLConnection connection = post("/convert?namespace=" + NS + "&name=Abcd", schema);
+		assertEquals(200, connection.getResponseCode());
+		final String warning = connection.getHeaderField("X-Conversion-Warning");
+		assertTrue(warning, warning.matches("[\\x20-\\x7E]+"));
+		assertEquals(expected.getDiagnostics().get(0).toString(), URLDecoder.decode(warning, "UTF-8"));
+	}
+
+	@Test
+	public void testBatch() throws IOException
+	{
+		final String schema = read("/schema/abcd.json");
+		final HttpURLConnection connection = post("/batch?namespace=" + NS, "{\"Abcd\":" + schema + ",\"Broken\":{\"type\":\"string\"},\"Choice\":" + read("/schema/oneof.json") + "}");
+		assertEquals(200, connection.getResponseCode());
+		final JsonNode results = new ObjectMapper().readTree(connection.getInputStream());
+
+		final StringWriter expected = new StringWriter();
+		converter.convert(new StringReader(schema), expected, NS, Jsons2Xsd.OuterWrapping.ELEMENT, "Abcd");
+		assertEquals(expected.toString(), results.path("Abcd").path("xsd").textValue());
+		assertEquals(0, results.path("Abcd").path("warnings").size());
+		assertTrue(results.path("Broken").has("error"));
+		assertEquals(3, results.path("Choice").path("warnings").size());
+	}
+
+	@Test
+	public void testOverloaded() throws IOException
+	{
+		// Keeps every thread waiting for the rest of a body
+		final List<Socket> slow = new ArrayList<>();
+		try
+		{
+			for (int i = 0; i < THREADS; i++)
+			{
+				final Socket socket = new Socket("localhost", server.getAddress().getPort());
+				slow.add(socket);
+				final OutputStream out = socket.getOutputStream();
+				out.write(("POST /convert?namespace=" + NS + "&name=Abcd HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000\r\n\r\n{").getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			}
+
+			int status = 0;
+			for (int i = 0; i < 100 && status != 503; i++)
+			{
+				status = post("/convert?namespace=" + NS + "&name=Abcd", read("/schema/abcd.json")).getResponseCode();
+			}
+			assertEquals(503, status);
+		}
+		finally
+		{
+			for (Socket socket : slow)
+			{
+				socket.close();
+			}
+		}
+	}
+
+	private HttpURLConnection post(String path, String body) throws IOException
+	{
+		final HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (final OutputStream out = connection.getOutputStream())
+		{
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	private URL url(String path) throws IOException
+	{
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static String body(InputStream in) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+		{
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private String read(String resource) throws IOException
+	{
+		try (final Reader r = new InputStreamReader(getClass().getResourceAsStream(resource), StandardCharsets.UTF_8))
+		{
+			final StringBuilder sb = new StringBuilder();
+			final char[] buffer = new char[4096];
+			for (int read = r.read(buffer); read >= 0; read = r.read(buffer))
+			{
+				sb.append(buffer, 0, read);
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author mha
+ *
+ */
+public class Jsons2XsdWatchTest
+{
+	private static final String NS = "http://ethlo.com/schema/watch";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Jsons2XsdConverter converter = new Jsons2XsdConverter();
+	private Path schemas;
+	private Path output;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		schemas = folder.newFolder("schemas").toPath();
+		output = folder.newFolder("xsd").toPath();
+		write("definitions.json", definitions("string", "string"));
+		write("person.json", schema("Address"));
+		write("company.json", schema("Phone"));
+	}
+
+	@Test
+	public void testUpdateConvertsOnlyChanges() throws IOException
+	{
+		final Jsons2XsdWatch watch = new Jsons2XsdWatch(converter, schemas, "**.json", output, Jsons2XsdBatch.naming(NS, "{name}"), schemas.resolve("definitions.json"), Jsons2XsdSingleFile.OuterWrapping.ELEMENT);
+
+		assertEquals(Arrays.asList(Paths.get("company.json"), Paths.get("person.json")), watch.update().getConverted());
+		assertConverted("person", definitions("string", "string"));
+		assertEquals(0, watch.update().getConverted().size());
+
+		// Same content saved again
+		write("person.json", schema("Address"));
+		assertEquals(0, watch.update().getConverted().size());
+
+		// Only the schema reaching the changed definition
+		write("definitions.json", definitions("string", "integer"));
+		assertEquals(Collections.singletonList(Paths.get("company.json")), watch.update().getConverted());
+		assertConverted("company", definitions("string", "integer"));
+		assertConverted("person", definitions("string", "integer"));
+
+		// Nothing until the definitions are fixed
+		write("definitions.json", "{");
+		assertEquals(Collections.singleton(schemas.resolve("definitions.json").toAbsolutePath()), watch.update().getFailures().keySet());
+		write("person.json", schema("Phone"));
+		assertEquals(1, watch.update().getFailures().size());
+		write("definitions.json", definitions("string", "integer"));
+		assertEquals(Collections.singletonList(Paths.get("person.json")), watch.update().getConverted());
+
+		Files.delete(schemas.resolve("company.json"));
+		assertEquals(Collections.singletonList(Paths.get("company.json")), watch.update().getRemoved());
+		assertFalse(Files.exists(output.resolve("company.xsd")));
+	}
+
+	@Test
+	public void testWatch() throws Exception
+	{
+		final BlockingQueue<Jsons2XsdWatch.Update> updates = new LinkedBlockingQueue<>();
+		final Jsons2XsdWatch watch = new Jsons2XsdWatch(converter, schemas, "**.json", output, Jsons2XsdBatch.naming(NS, "{name}"), schemas.resolve("definitions.json"), Jsons2XsdSingleFile.OuterWrapping.ELEMENT);
+		final Thread watching = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					watch.watch(50, TimeUnit.MILLISECONDS, new Jsons2XsdWatch.Listener()
+					{
+						@Override
+						public void updated(Jsons2XsdWatch.Update update)
+						{
+							updates.add(update);
+						}
+					});
+				}
+				catch (IOException | InterruptedException exc)
+				{
+					throw new IllegalStateException(exc);
+				}
+			}
+		};
+		watching.start();
+		try
+		{
+			assertEquals(2, updates.poll(10, TimeUnit.SECONDS).getConverted().size());
+
+			Files.createDirectories(schemas.resolve("nested"));
+			write("nested/shop.json", schema("Address"));
+			Jsons2XsdWatch.Update update = updates.poll(10, TimeUnit.SECONDS);
+			while (update != null && update.getConverted().isEmpty())
+			{
+				update = updates.poll(10, TimeUnit.SECONDS);
+			}
+			assertEquals(Collections.singletonList(Paths.get("nested/shop.json")), update.getConverted());
+			assertTrue(Files.exists(output.resolve("nested/shop.xsd")));
+		}
+		finally
+		{
+			watch.close();
+			watching.join(10000);
+		}
+		assertFalse(watching.isAlive());
+	}
+
+	private void assertConverted(String name, String definitions) throws IOException
+	{
+		final StringWriter expected = new StringWriter();
+		converter.convert(new StringReader(new String(Files.readAllBytes(schemas.resolve(name + ".json")), StandardCharsets.UTF_8)), converter.loadDefinitions(new StringReader(definitions)), expected, NS, Jsons2XsdSingleFile.OuterWrapping.ELEMENT, name);
+		assertEquals(expected.toString(), new String(Files.readAllBytes(output.resolve(name + ".xsd")), StandardCharsets.UTF_8));
+	}
+
+	private void write(String file, String content) throws IOException
+	{
+		Files.write(schemas.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String schema(String definition)
+	{
+		return "{\"type\":\"object\",\"properties\":{\"name\":{\"type\":\"string\"},\"contact\":{\"$ref\":\"#/definitions/" + definition + "\"}}}";
+	}
+
+	private static String definitions(String street, String number)
+	{
+		return "{\"definitions\":{"
+			+ "\"Address\":{\"type\":\"object\",\"properties\":{\"street\":{\"type\":\"" + street + "\"}}},"
+			+ "\"Phone\":{\"type\":\"object\",\"properties\":{\"number\":{\"type\":\"" + number + "\"}}}}}";
+	}
+}
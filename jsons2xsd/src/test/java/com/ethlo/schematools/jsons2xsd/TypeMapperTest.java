@@ -0,0 +1,60 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class TypeMapperTest
+{
+	private static final String UUID = "[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}";
+	
+	@Test
+	public void testDefaultMappings()
+	{
+		final TypeMapper types = TypeMapper.DEFAULT;
+		assertEquals("int", types.getXsdType("integer", null));
+		assertEquals("dateTime", types.getXsdType("date-time", null));
+		assertEquals("anyURI", types.getXsdType("string", "uri"));
+		assertEquals("anyURI", types.getXsdType("String", "URI"));
+		assertEquals("long", types.getXsdType("string", "utc-millisec"));
+		assertNull(types.getXsdType("integer", "int64"));
+		assertNull(types.getXsdType("null", null));
+		assertNull(types.getPattern("string", "uri"));
+	}
+	
+	@Test
+	public void testExtraFormats() throws IOException
+	{
+		final Properties properties = new Properties();
+		properties.load(new StringReader("integer|int64 = long\nstring|uuid.pattern = " + UUID.replace("\\", "\\\\") + "\n"));
+		final TypeMapper types = TypeMapper.DEFAULT.with(properties);
+		assertEquals("long", types.getXsdType("integer", "int64"));
+		assertEquals("string", types.getXsdType("string", "uuid"));
+		assertEquals(UUID, types.getPattern("string", "uuid"));
+		assertEquals("int", types.getXsdType("integer", null));
+		assertNull(TypeMapper.DEFAULT.getXsdType("integer", "int64"));
+		assertEquals(types.toString(), TypeMapper.DEFAULT.withPattern("uuid", UUID).withFormat("integer", "int64", "long").toString());
+		
+		final String schema = "{\"type\":\"object\",\"properties\":{"
+			+ "\"id\":{\"type\":\"string\",\"format\":\"uuid\"},"
+			+ "\"size\":{\"type\":\"integer\",\"format\":\"int64\"}}}";
+		final StringWriter xsd = new StringWriter();
+		new Jsons2XsdConverter(new ObjectMapper(), types).convert(new StringReader(schema), xsd, "http://ethlo.com/schema/types", Jsons2Xsd.OuterWrapping.ELEMENT, "typesType");
+		assertTrue(xsd.toString(), xsd.toString().contains("<pattern value=\"" + UUID + "\"/>"));
+		assertTrue(xsd.toString(), xsd.toString().contains("name=\"size\" type=\"long\""));
+	}
+}
@@ -0,0 +1,52 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class UpgradeToDbsSchemaTest
+{
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	@Test
+	public void testPrunesBooleanKeywordsOnly() throws IOException
+	{
+		final JsonNode node = mapper.readTree("{\"type\":\"object\",\"additionalProperties\":false,\"properties\":{"
+			+ "\"additionalProperties\":{\"type\":\"string\"},"
+			+ "\"list\":{\"type\":\"array\",\"additionalItems\":false,\"items\":{\"type\":\"object\",\"additionalProperties\":true,\"properties\":{}}},"
+			+ "\"choice\":{\"type\":\"object\",\"oneOf\":[{\"type\":\"object\",\"additionalProperties\":false}]}}}");
+		
+		final JsonNode upgraded = Jsons2Xsd.upgradeToDbsSchema(node);
+		
+		assertFalse(upgraded.has("additionalProperties"));
+		assertEquals("string", upgraded.path("properties").path("additionalProperties").path("type").textValue());
+		assertFalse(upgraded.path("properties").path("list").has("additionalItems"));
+		assertFalse(upgraded.path("properties").path("list").path("items").has("additionalProperties"));
+		assertFalse(upgraded.path("properties").path("choice").path("oneOf").path(0).has("additionalProperties"));
+		assertTrue(upgraded.path("properties").path("choice").path("oneOf").path(0).has("type"));
+	}
+	
+	@Test
+	public void testMovesDefinitions() throws IOException
+	{
+		final JsonNode node = mapper.readTree("{\"properties\":{\"a\":{\"type\":\"string\"}},\"definitions\":{\"B\":{\"type\":\"object\",\"additionalProperties\":false,\"properties\":{}}}}");
+		
+		final JsonNode upgraded = Jsons2Xsd.upgradeToDbsSchema(node);
+		
+		assertEquals("object", upgraded.path("type").textValue());
+		assertFalse(upgraded.has("definitions"));
+		assertEquals(mapper.readTree("{\"B\":{\"type\":\"object\",\"properties\":{}}}"), upgraded.path("properties"));
+	}
+}
@@ -0,0 +1,124 @@
+package com.ethlo.schematools.jsons2xsd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * @author mha
+ *
+ */
+public class XmlUtilTest
+{
+	@Test
+	public void testWriteMatchesAsXmlString() throws IOException
+	{
+		final Document doc = XmlUtil.newDocument();
+		final Element schema = XmlUtil.createXsdElement(doc, "schema");
+		XmlUtil.createXsdElement(schema, "element").setAttribute("name", "æøå");
+		
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XmlUtil.write(schema, out);
+		assertEquals(XmlUtil.asXmlString(schema), new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testProfiles() throws IOException, SAXException
+	{
+		final Document doc = XmlUtil.newDocument();
+		doc.setXmlStandalone(true);
+		final Element schema = XmlUtil.createXsdElement(doc, "schema");
+		schema.setAttribute("xmlns:t", "urn:t");
+		schema.setAttribute("targetNamespace", "urn:t");
+		final Element element = XmlUtil.createXsdElement(schema, "element");
+		element.setAttribute("type", "string");
+		element.setAttribute("name", "a<b");
+		
+		assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><schema xmlns:t=\"urn:t\" targetNamespace=\"urn:t\" xmlns=\"http://www.w3.org/2001/XMLSchema\"><element name=\"a&lt;b\" type=\"string\"/></schema>", XmlUtil.asXmlString(doc, OutputProfile.COMPACT));
+		final String canonical = "<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" xmlns:t=\"urn:t\" targetNamespace=\"urn:t\"><element name=\"a&lt;b\" type=\"string\"></element></schema>";
+		assertEquals(canonical, XmlUtil.asXmlString(doc, OutputProfile.CANONICAL));
+		
+		// The same from the indented text, and as bytes
+		final Document parsed = XmlUtil.loadDocument(new StringReader(XmlUtil.asXmlString(doc)));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XmlUtil.write(parsed, out, OutputProfile.CANONICAL);
+		assertEquals(canonical, new String(out.toByteArray(), StandardCharsets.UTF_8));
+		
+		element.appendChild(doc.createTextNode("text"));
+		try
+		{
+			XmlUtil.asXmlString(doc, OutputProfile.CANONICAL);
+			fail("Expected text to be refused");
+		}
+		catch (IllegalArgumentException expected)
+		{
+			// Only XSDs can be written in canonical form
+		}
+	}
+
+	@Test
+	public void testCanonicalRoundTrip() throws IOException, SAXException
+	{
+		final String pattern = "[a-z]\n\t\r  [&<>\"']";
+		final Document doc = XmlUtil.newDocument();
+		final Element schema = XmlUtil.createXsdElement(doc, "schema");
+		final Element restriction = XmlUtil.createXsdElement(XmlUtil.createXsdElement(schema, "simpleType"), "restriction");
+		restriction.setAttribute("base", "string");
+		XmlUtil.createXsdElement(restriction, "pattern").setAttribute("value", pattern);
+		XmlUtil.createXsdElement(restriction, "enumeration").setAttribute("value", "line\nbreak");
+
+		final String canonical = XmlUtil.asXmlString(doc, OutputProfile.CANONICAL);
+		final Document parsed = XmlUtil.loadDocument(new StringReader(canonical));
+		final Element parsedRestriction = (Element) parsed.getDocumentElement().getFirstChild().getFirstChild();
+		assertEquals(pattern, ((Element) parsedRestriction.getFirstChild()).getAttribute("value"));
+		assertEquals("line\nbreak", ((Element) parsedRestriction.getLastChild()).getAttribute("value"));
+
+		// Written again, the same bytes
+		assertEquals(canonical, XmlUtil.asXmlString(parsed, OutputProfile.CANONICAL));
+	}
+	
+	@Test
+	public void testBuilderPerThread() throws Exception
+	{
+		final DocumentBuilder builder = XmlUtil.pooledBuilder();
+		assertSame(builder, XmlUtil.pooledBuilder());
+		
+		// Public callers get a builder of their own
+		assertNotSame(builder, XmlUtil.getBuilder());
+		assertNotSame(XmlUtil.getBuilder(), XmlUtil.getBuilder());
+		
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			assertNotSame(builder, executor.submit(new Callable<DocumentBuilder>()
+			{
+				@Override
+				public DocumentBuilder call()
+				{
+					return XmlUtil.pooledBuilder();
+				}
+			}).get());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}